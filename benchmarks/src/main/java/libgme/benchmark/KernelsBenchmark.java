@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import libgme.util.Kernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the scalar {@link Kernels} with the Vector API ones.
+ * <p>
+ * The fork runs with {@code --add-modules jdk.incubator.vector}, so {@code vector}
+ * is {@link Kernels#instance}. It is scalar as well if the JVM has no SIMD support.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class KernelsBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    /** samples per call, a blip buffer frame of 32 msec at 44.1kHz stereo */
+    @Param({"2822"})
+    public int count;
+
+    Kernels k;
+    short[] shorts;
+    float[] floats;
+    int[] fm;
+    int[] hist;
+    int[] taps;
+    int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        k = kernels.equals("vector") ? Kernels.instance : Kernels.scalar;
+        Random random = new Random(1);
+        shorts = new short[count];
+        floats = new float[count];
+        fm = new int[count];
+        for (int i = 0; i < count; i++) {
+            shorts[i] = (short) random.nextInt();
+            floats[i] = random.nextFloat() * 2 - 1;
+            fm[i] = random.nextInt(0x10000) - 0x8000;
+        }
+        hist = new int[32];
+        for (int i = 0; i < hist.length; i++) {
+            hist[i] = random.nextInt(0x10000) - 0x8000;
+        }
+        taps = new int[16];
+        for (int i = 0; i < 8; i++) {
+            taps[i * 2] = taps[i * 2 + 1] = (byte) random.nextInt();
+        }
+    }
+
+    /** YM2612 into 16 bit output */
+    @Benchmark
+    public short[] mixShorts() {
+        k.mixQuarter(shorts, 0, fm, 0, count);
+        return shorts;
+    }
+
+    /** YM2612 into float output */
+    @Benchmark
+    public float[] mixFloats() {
+        k.mixQuarter(floats, 0, fm, 0, count, 1f / 0x8000);
+        return floats;
+    }
+
+    /** SPC echo filter, one call per sample */
+    @Benchmark
+    public long fir8() {
+        pos = (pos + 2) & 15;
+        return k.fir8(hist, pos, taps);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import libgme.Fixtures;
+import libgme.MusicEmu;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures {@link MusicEmu#play(byte[], int)} throughput of every emulator core,
+ * and {@link MusicEmu#play(short[], int, int)} without packing into bytes.
+ * <p>
+ * Besides the ops/s of the benchmark itself, two secondary results are reported
+ * <ul>
+ *  <li>{@code samples} ... 16 bit samples rendered per second</li>
+ *  <li>{@code realtime} ... seconds of audio rendered per second, i.e. the realtime multiple</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayBenchmark {
+
+    @Param({Fixtures.NSF, Fixtures.GBS, Fixtures.SPC, Fixtures.VGM_PSG, Fixtures.VGM_YM2612})
+    public String fixture;
+
+    /** samples per {@link MusicEmu#play(byte[], int)} call, same as {@code EmuPlayer} uses */
+    @Param({"4096"})
+    public int count;
+
+    @Param({"44100"})
+    public int sampleRate;
+
+    MusicEmu emu;
+    byte[] buf;
+    short[] samples;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        emu = (MusicEmu) Class.forName(Fixtures.emuClassName(fixture)).getDeclaredConstructor().newInstance();
+        emu.setEndlessLoopFlag(true);
+        emu.setSampleRate(sampleRate);
+        emu.loadFile(Fixtures.create(fixture));
+        emu.startTrack(0);
+        buf = new byte[count * 2];
+        samples = new short[count];
+    }
+
+    /** render throughput, normalized by the emulator's actual output rate */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public double samples;
+
+        public double realtime;
+    }
+
+    @Benchmark
+    public int play(Counters counters) {
+        if (emu.trackEnded())
+            emu.startTrack(0);
+
+        int n = emu.play(buf, count);
+        counters.samples += n;
+        counters.realtime += n / (emu.sampleRate() * 2.0);
+        return n;
+    }
+
+    @Benchmark
+    public int playShorts(Counters counters) {
+        if (emu.trackEnded())
+            emu.startTrack(0);
+
+        int n = emu.play(samples, 0, count);
+        counters.samples += n;
+        counters.realtime += n / (emu.sampleRate() * 2.0);
+        return n;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import libgme.Fixtures;
+import libgme.spc.SpcEmu;
+import libgme.util.Resampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the SPC output resampled from 32000 Hz by each filter width.
+ * <p>
+ * {@code play} is the whole {@link SpcEmu} at the sample rate, 32000 is not resampled.
+ * {@code resample} is the {@link Resampler} alone, input is generated before.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResamplerBenchmark {
+
+    @Param({"32000", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"2", "8", "16", "32"})
+    public int width;
+
+    /** samples per call, same as {@code EmuPlayer} uses */
+    @Param({"4096"})
+    public int count;
+
+    SpcEmu emu;
+    short[] samples;
+    Resampler resampler;
+    float[] input;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        emu = new SpcEmu();
+        emu.setEndlessLoopFlag(true);
+        emu.setSampleRate(sampleRate);
+        emu.setResamplerWidth(width);
+        emu.loadFile(Fixtures.create(Fixtures.SPC));
+        emu.startTrack(0);
+        samples = new short[count];
+
+        resampler = new Resampler(32000, sampleRate);
+        resampler.setWidth(width);
+        Random random = new Random(1);
+        input = new float[count * 2];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextFloat() - 0.5f;
+        }
+    }
+
+    @Benchmark
+    public int play() {
+        if (emu.trackEnded())
+            emu.startTrack(0);
+
+        return emu.play(samples, 0, count);
+    }
+
+    @Benchmark
+    public int resample() {
+        int frames = resampler.required(count / 2);
+        System.arraycopy(input, 0, resampler.buffer(frames), resampler.writeOffset(), frames * 2);
+        resampler.written(frames);
+        return resampler.read(samples, 0, count / 2);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import libgme.Fixtures;
+import libgme.vgm.VgmEmu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures {@link VgmEmu} with commands interpreted at each frame and precompiled.
+ * <p>
+ * {@code play} is the render throughput, {@code load} is the cost of loading
+ * including the compilation.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VgmBenchmark {
+
+    @Param({Fixtures.VGM_PSG, Fixtures.VGM_YM2612})
+    public String fixture;
+
+    @Param({"false", "true"})
+    public boolean precompiled;
+
+    /** samples per call, same as {@code EmuPlayer} uses */
+    @Param({"4096"})
+    public int count;
+
+    VgmEmu emu;
+    byte[] data;
+    short[] samples;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = Fixtures.create(fixture);
+        emu = new VgmEmu();
+        emu.setEndlessLoopFlag(true);
+        emu.setPrecompiled(precompiled);
+        emu.setSampleRate(44100);
+        emu.loadFile(data);
+        emu.startTrack(0);
+        samples = new short[count];
+    }
+
+    @Benchmark
+    public int play() {
+        if (emu.trackEnded())
+            emu.startTrack(0);
+
+        return emu.play(samples, 0, count);
+    }
+
+    @Benchmark
+    public int load() {
+        emu.loadFile(data);
+        emu.startTrack(0);
+        return emu.trackCount();
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import libgme.util.BlipBuffer;
+import libgme.util.DataReader;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Renders many tracks in parallel.
+ * <p>
+ * Every job gets its own {@link MusicEmu} instance and {@link Renderer}, so
+ * jobs don't share any emulator state. A file is loaded when its job starts,
+ * so memory use is bounded by the parallelism, not by the number of jobs.
+ * Emulators are recycled through a {@link MusicEmuPool}.
+ * <pre>
+ *  try (BatchRenderer batch = new BatchRenderer(44100)) {
+ *      List&lt;Job&gt; jobs = BatchRenderer.allTracks(nsf, 150, 8);
+ *      batch.render(jobs, job -&gt; FileChannel.open(out(job), CREATE, WRITE), null);
+ *  }
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class BatchRenderer implements AutoCloseable {
+
+    private static final Logger logger = getLogger(BatchRenderer.class.getName());
+
+    /**
+     * A track to render.
+     *
+     * @param length seconds before fade out, see {@link Renderer#startTrack(int, int, int)}
+     * @param fade seconds of fade out
+     */
+    public record Job(Path path, int track, int length, int fade) {
+    }
+
+    /**
+     * Outcome of a job.
+     *
+     * @param samples 16 bit samples rendered
+     * @param nanos time spent for loading and rendering
+     * @param error nullable, the cause if the job failed
+     */
+    public record Result(Job job, int sampleRate, long samples, long nanos, Throwable error) {
+
+        /** rendered samples per second */
+        public double samplesPerSecond() {
+            return nanos == 0 ? 0 : samples * 1e9 / nanos;
+        }
+
+        /** seconds of audio rendered per second */
+        public double realtime() {
+            return sampleRate == 0 ? 0 : samplesPerSecond() / (sampleRate * 2.0);
+        }
+    }
+
+    /** Opens destination of a job, the renderer closes it */
+    @FunctionalInterface
+    public interface Sink {
+        WritableByteChannel open(Job job) throws IOException;
+    }
+
+    private final int sampleRate;
+
+    private final ForkJoinPool pool;
+
+    private final MusicEmuPool emus;
+
+    private ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+
+    private int silenceMsec;
+
+    private int silenceThreshold;
+
+    private boolean loopDetection;
+
+    private int kernelWidth = BlipBuffer.defaultKernelWidth;
+
+    /** uses all cores */
+    public BatchRenderer(int sampleRate) {
+        this(sampleRate, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param parallelism max number of tracks rendered at once */
+    public BatchRenderer(int sampleRate, int parallelism) {
+        this.sampleRate = sampleRate;
+        this.pool = new ForkJoinPool(parallelism);
+        this.emus = new MusicEmuPool(parallelism);
+    }
+
+    /** Byte order of the samples written to sinks, default little endian */
+    public void setByteOrder(ByteOrder order) {
+        this.order = order;
+    }
+
+    /**
+     * Stops a job early when its output goes silent.
+     *
+     * @see MusicEmu#setSilenceDetection(int, int)
+     */
+    public void setSilenceDetection(int msec, int threshold) {
+        this.silenceMsec = msec;
+        this.silenceThreshold = threshold;
+    }
+
+    /**
+     * Stops a job early when its music loops.
+     *
+     * @see MusicEmu#setLoopDetection(boolean)
+     */
+    public void setLoopDetection(boolean loopDetection) {
+        this.loopDetection = loopDetection;
+    }
+
+    /**
+     * Trades quality for speed, e.g. narrow for previews and wide for mastering.
+     *
+     * @see ClassicEmu#setKernelWidth(int)
+     */
+    public void setKernelWidth(int taps) {
+        this.kernelWidth = taps;
+    }
+
+    /**
+     * Renders all jobs, blocks until all of them are done.
+     * A failed job doesn't stop the others, see {@link Result#error()}.
+     *
+     * @param listener nullable, called from worker threads as each job finishes
+     * @return results in the order of jobs
+     */
+    public List<Result> render(List<Job> jobs, Sink sink, Consumer<Result> listener) {
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            tasks.add(pool.submit(() -> {
+                Result result = render(job, sink);
+                if (listener != null)
+                    listener.accept(result);
+                return result;
+            }));
+        }
+        List<Result> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Result> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /** Renders a job on the current thread */
+    Result render(Job job, Sink sink) {
+        long start = System.nanoTime();
+        MusicEmu emu = null;
+        long bytes = 0;
+        try {
+            emu = emus.acquire(read(job.path), sampleRate);
+            try {
+                emu.setSilenceDetection(silenceMsec, silenceThreshold);
+                emu.setLoopDetection(loopDetection);
+                if (emu instanceof ClassicEmu classic)
+                    classic.setKernelWidth(kernelWidth);
+                Renderer renderer = new Renderer(emu);
+                renderer.startTrack(job.track, job.length, job.fade);
+                try (WritableByteChannel channel = sink.open(job)) {
+                    bytes = renderer.render(channel, order);
+                }
+            } finally {
+                emus.release(emu);
+            }
+            Result result = new Result(job, emu.sampleRate(), bytes / 2, System.nanoTime() - start, null);
+logger.log(Level.DEBUG, "%s #%d: %d samples, x%.1f".formatted(job.path, job.track, result.samples, result.realtime()));
+            return result;
+        } catch (Exception e) {
+logger.log(Level.WARNING, job.path + " #" + job.track + ": " + e);
+            return new Result(job, emu == null ? 0 : emu.sampleRate(), bytes / 2, System.nanoTime() - start, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Lists jobs for every track in the file.
+     *
+     * @throws IllegalArgumentException unsupported file
+     */
+    public static List<Job> allTracks(Path path, int length, int fade) throws IOException {
+        MusicEmu emu = load(path, 44100);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, emu.trackCount()); i++) {
+            jobs.add(new Job(path, i, length, fade));
+        }
+        return jobs;
+    }
+
+    /**
+     * Loads the file into a new emulator instance.
+     *
+     * @throws IllegalArgumentException unsupported file
+     */
+    static MusicEmu load(Path path, int sampleRate) throws IOException {
+        ByteBuffer data = read(path);
+        MusicEmuFactory factory = MusicEmuFactory.of(data);
+        if (factory == null)
+            throw new IllegalArgumentException("unsupported file: " + path);
+        MusicEmu emu = factory.create();
+        emu.setSampleRate(sampleRate);
+        emu.loadFile(data);
+        return emu;
+    }
+
+    /** Maps the file, or reads the whole file gunzipped if compressed */
+    private static ByteBuffer read(Path path) throws IOException {
+        ByteBuffer data = DataReader.map(path);
+        if (data.limit() > 2 && (data.get(0) & 0xff) == 0x1f && (data.get(1) & 0xff) == 0x8b) {
+            try (InputStream in = Files.newInputStream(path)) {
+                return ByteBuffer.wrap(DataReader.loadData(DataReader.openGZIP(in)));
+            }
+        }
+        return data;
+    }
+}
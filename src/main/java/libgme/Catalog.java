@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Index of music files, made by {@link CatalogIndexer}.
+ * <p>
+ * Files are listed without opening them, an entry has the format, tags and length
+ * read by {@link MusicInfo}, and the length of each track. Files which are not music
+ * are also recorded, so that they are not opened again when indexed incrementally.
+ * <p>
+ * The file is gzipped and versioned, paths are absolute, entries in a zip file
+ * are {@code zip path + "!/" + entry name}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class Catalog {
+
+    /**
+     * An indexed file or zip entry.
+     *
+     * @param size bytes, uncompressed size for a zip entry
+     * @param modified last modified time in msec
+     * @param crc CRC-32 for a zip entry, 0 for a file
+     * @param format "NSF", "GBS", "SPC", "VGM" etc., null if not music
+     * @param info read from the header, null if not music
+     * @param durations microseconds of each track, from the header or estimated by
+     *                  {@link CatalogIndexer}, -1 if unknown, null if not music
+     */
+    public record Entry(String path, long size, long modified, long crc, String format, MusicInfo info, long[] durations) {
+
+        /** True if this is a music file */
+        public boolean isMusic() {
+            return format != null;
+        }
+
+        /** Microseconds of the track, where 0 is the first track, -1 if unknown */
+        public long duration(int track) {
+            return durations == null || track < 0 || track >= durations.length ? -1 : durations[track];
+        }
+    }
+
+    static final int magic = 0x474d4543; // "GMEC"
+
+    /** 2: durations of each track */
+    static final short version = 2;
+
+    /** sorted by path */
+    private final Map<String, Entry> entries;
+
+    /** empty one */
+    public Catalog() {
+        this(new TreeMap<>());
+    }
+
+    Catalog(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /** All entries sorted by path, including not music ones */
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /** @return nullable */
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Entries of a zip file, sorted by path */
+    Collection<Entry> archived(String zip) {
+        String prefix = zip + "!/";
+        return ((TreeMap<String, Entry>) entries).subMap(prefix, prefix + Character.MAX_VALUE).values();
+    }
+
+    /**
+     * Reads a catalog written by {@link #save(Path)}.
+     *
+     * @return an empty one if the file doesn't exist or is of an older version,
+     *         so that all files are indexed again
+     * @throws IOException the file is broken or of a newer version
+     */
+    public static Catalog load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != magic)
+                throw new IOException("not a catalog: " + file);
+            int version = in.readShort();
+            if (version < Catalog.version)
+                return new Catalog();
+            if (version != Catalog.version)
+                throw new IOException("unsupported version: " + version);
+            int count = in.readInt();
+            Map<String, Entry> entries = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                long crc = in.readLong();
+                String format = readString(in);
+                MusicInfo info = null;
+                long[] durations = null;
+                if (format != null) {
+                    info = new MusicInfo(readString(in), readString(in), readString(in), readString(in), readString(in),
+                            readString(in), readString(in), readString(in), in.readInt(), in.readLong(), in.readLong());
+                    durations = new long[in.readInt()];
+                    for (int j = 0; j < durations.length; j++) {
+                        durations[j] = in.readLong();
+                    }
+                }
+                entries.put(path, new Entry(path, size, modified, crc, format, info, durations));
+            }
+            return new Catalog(entries);
+        } catch (NoSuchFileException e) {
+            return new Catalog();
+        }
+    }
+
+    /** Writes into a temporary file and replaces the file by it */
+    public void save(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(magic);
+                out.writeShort(version);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.crc);
+                    writeString(out, entry.format);
+                    if (entry.format != null) {
+                        MusicInfo info = entry.info;
+                        writeString(out, info.system());
+                        writeString(out, info.game());
+                        writeString(out, info.title());
+                        writeString(out, info.author());
+                        writeString(out, info.copyright());
+                        writeString(out, info.dumper());
+                        writeString(out, info.date());
+                        writeString(out, info.comment());
+                        out.writeInt(info.trackCount());
+                        out.writeLong(info.duration());
+                        out.writeLong(info.loopDuration());
+                        out.writeInt(entry.durations.length);
+                        for (long duration : entry.durations) {
+                            out.writeLong(duration);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** at most 3 bytes per char in modified UTF-8, less than the 64KB limit of writeUTF */
+    static final int maxStringLength = 0xffff / 3;
+
+    /** null is written as an empty string, {@link MusicInfo} has no empty strings */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeUTF(s == null ? "" : s.length() > maxStringLength ? s.substring(0, maxStringLength) : s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        String s = in.readUTF();
+        return s.isEmpty() ? null : s;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Makes a {@link Catalog} of directories and zip files in parallel.
+ * <p>
+ * Only headers are read, no emulator is created. The format is detected by
+ * {@link MusicEmuFactory}, gzipped files are detected as well, tags and length
+ * are read by {@link MusicInfo}.
+ * <p>
+ * Formats without a length in the header, NSF, GBS and SPC without ID666 length,
+ * are the exception. Each of their tracks is skipped through by {@link MusicEmu#skip(long)}
+ * until it loops or goes silent, see {@link #setEstimateLimit(int)}.
+ * Lengths of tracks are {@link Catalog.Entry#durations()}.
+ * <p>
+ * Indexing is incremental, a file whose size and last modified time are the same
+ * as in the previous catalog is not opened. A zip file is not opened either if
+ * it is the same, otherwise its entries are compared by size and CRC-32 in the
+ * zip directory, so only changed entries are read.
+ * <pre>
+ *  try (CatalogIndexer indexer = new CatalogIndexer()) {
+ *      Catalog catalog = indexer.index(Catalog.load(index), List.of(root));
+ *      catalog.save(index);
+ *  }
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class CatalogIndexer implements AutoCloseable {
+
+    private static final Logger logger = getLogger(CatalogIndexer.class.getName());
+
+    private final ForkJoinPool pool;
+
+    /** files and zip entries read by the last index() */
+    private final AtomicInteger read = new AtomicInteger();
+
+    /** emulators for estimating lengths, one per worker */
+    private final MusicEmuPool emus;
+
+    /** seconds, 0 disables */
+    private int estimateLimit = 300;
+
+    /** native rate of SPC, so that nothing is resampled */
+    static final int estimateRate = 32000;
+
+    /** silence ending a track when estimating */
+    static final int estimateSilenceMsec = 3000;
+    static final int estimateSilenceThreshold = 8;
+
+    /** uses all cores */
+    public CatalogIndexer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param parallelism max number of files read at once */
+    public CatalogIndexer(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.emus = new MusicEmuPool(parallelism);
+    }
+
+    /**
+     * Sets the longest skip to estimate a length of a track without it in the header.
+     * The length is the end of the first loop found by {@link MusicEmu#setLoopDetection(boolean)},
+     * or the start of 3 seconds of silence. It stays unknown if neither is within the limit.
+     * Every track of a file is estimated.
+     *
+     * @param seconds 0 disables estimating, default 300
+     */
+    public void setEstimateLimit(int seconds) {
+        this.estimateLimit = seconds;
+    }
+
+    /**
+     * Indexes all files under roots, blocks until done.
+     * Files removed since the previous catalog are not in the result.
+     * A file failed to read is not recorded, so that it is read again next time.
+     *
+     * @param previous entries not changed are reused, use an empty one for a full index
+     * @param roots directories, or files
+     */
+    public Catalog index(Catalog previous, List<Path> roots) throws IOException {
+        read.set(0);
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            try (Stream<Path> stream = Files.walk(root)) {
+                stream.filter(Files::isRegularFile).map(p -> p.toAbsolutePath().normalize()).forEach(files::add);
+            }
+        }
+
+        List<ForkJoinTask<List<Catalog.Entry>>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            tasks.add(pool.submit(() -> index(previous, file)));
+        }
+        Map<String, Catalog.Entry> entries = new TreeMap<>();
+        for (ForkJoinTask<List<Catalog.Entry>> task : tasks) {
+            for (Catalog.Entry entry : task.join()) {
+                entries.put(entry.path(), entry);
+            }
+        }
+logger.log(Level.DEBUG, "indexed: " + entries.size() + " entries, read: " + read.get());
+        return new Catalog(entries);
+    }
+
+    /** Number of files and zip entries read by the last {@link #index(Catalog, List)}, others are reused */
+    public int lastReadCount() {
+        return read.get();
+    }
+
+    /** @return entries of the file, its zip entries as well if it's a zip file */
+    List<Catalog.Entry> index(Catalog previous, Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            String path = file.toString();
+            long modified = attrs.lastModifiedTime().toMillis();
+            Catalog.Entry old = previous.get(path);
+            boolean same = old != null && old.size() == attrs.size() && old.modified() == modified;
+            boolean zip = path.toLowerCase().endsWith(".zip");
+
+            List<Catalog.Entry> entries = new ArrayList<>();
+            if (same) {
+                entries.add(old);
+                if (zip)
+                    entries.addAll(previous.archived(path));
+                return entries;
+            }
+
+            if (zip) {
+                entries.add(new Catalog.Entry(path, attrs.size(), modified, 0, null, null, null));
+                indexZip(previous, file, entries);
+            } else {
+                read.incrementAndGet();
+                try (InputStream in = Files.newInputStream(file)) {
+                    entries.add(entry(path, attrs.size(), modified, 0, in));
+                }
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+logger.log(Level.WARNING, file + ": " + e);
+            return List.of();
+        }
+    }
+
+    /** Reads changed entries of a zip file */
+    private void indexZip(Catalog previous, Path file, List<Catalog.Entry> entries) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry ze = e.nextElement();
+                if (ze.isDirectory())
+                    continue;
+                String path = file + "!/" + ze.getName();
+                Catalog.Entry old = previous.get(path);
+                if (old != null && old.size() == ze.getSize() && old.crc() == ze.getCrc()) {
+                    entries.add(old);
+                    continue;
+                }
+                read.incrementAndGet();
+                try (InputStream in = zip.getInputStream(ze)) {
+                    entries.add(entry(path, ze.getSize(), ze.getTime(), ze.getCrc(), in));
+                }
+            }
+        }
+    }
+
+    /** Detects the format and reads the header of in */
+    Catalog.Entry entry(String path, long size, long modified, long crc, InputStream in) throws IOException {
+        in = new BufferedInputStream(in);
+        in.mark(2);
+        boolean gzipped = in.read() == 0x1f && in.read() == 0x8b;
+        in.reset();
+        if (gzipped)
+            in = new BufferedInputStream(new GZIPInputStream(in));
+
+        MusicEmuFactory factory = MusicEmuFactory.of(in);
+        if (factory == null)
+            return new Catalog.Entry(path, size, modified, crc, null, null, null);
+        in.mark(MusicInfo.headerSize);
+        byte[] header = in.readNBytes(MusicInfo.headerSize);
+        in.reset();
+        MusicInfo info = MusicInfo.read(in);
+        if (info == null)
+            return new Catalog.Entry(path, size, modified, crc, null, null, null);
+        long[] durations = new long[info.trackCount()];
+        Arrays.fill(durations, info.trackCount() == 1 ? info.duration() : -1);
+        if (durations.length > 0 && durations[0] < 0 && estimateLimit > 0) {
+            // only the header is read of formats without lengths
+            byte[] rest = in.readAllBytes();
+            byte[] data = Arrays.copyOf(header, header.length + rest.length);
+            System.arraycopy(rest, 0, data, header.length, rest.length);
+            estimate(data, durations);
+        }
+        String format = factory.type().getSimpleName().replace("Emu", "").toUpperCase();
+        return new Catalog.Entry(path, size, modified, crc, format, info, durations);
+    }
+
+    /** Sets durations of each track skipped through with loop and silence detection */
+    private void estimate(byte[] data, long[] durations) {
+        MusicEmu emu = emus.acquire(data, estimateRate);
+        try {
+            emu.setLoopDetection(true);
+            emu.setSilenceDetection(estimateSilenceMsec, estimateSilenceThreshold);
+            long limit = (long) estimateRate * 2 * estimateLimit;
+            for (int track = 0; track < Math.min(durations.length, emu.trackCount()); track++) {
+                emu.startTrack(track);
+                emu.skip(limit);
+                if (!emu.trackEnded())
+                    continue;
+                long frames = emu.position() / 2;
+                if (!emu.trackLooped())
+                    frames = Math.max(0, frames - (long) estimateRate * estimateSilenceMsec / 1000);
+logger.log(Level.TRACE, "estimated: " + track + ": " + frames + " frames, looped: " + emu.trackLooped());
+                durations[track] = frames * 1_000_000 / estimateRate;
+            }
+        } finally {
+            emus.release(emu);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
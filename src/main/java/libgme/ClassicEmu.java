@@ -18,6 +18,9 @@
 
 package libgme;
 
+import java.nio.ByteBuffer;
+
+import libgme.util.BlipBuffer;
 import libgme.util.StereoBuffer;
 
 
@@ -34,6 +37,25 @@ public abstract class ClassicEmu extends MusicEmu {
         return rate;
     }
 
+    /**
+     * Sets width of the band-limited step kernel, narrower is faster and lower quality.
+     *
+     * @see BlipBuffer#setKernelWidth(int)
+     */
+    public final void setKernelWidth(int taps) {
+        buf.setKernelWidth(taps);
+    }
+
+    public final int kernelWidth() {
+        return buf.kernelWidth();
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        setKernelWidth(BlipBuffer.defaultKernelWidth);
+    }
+
     @Override
     public void startTrack(int track) {
         super.startTrack(track);
@@ -41,8 +63,32 @@ public abstract class ClassicEmu extends MusicEmu {
     }
 
     @Override
-    protected int play_(byte[] out, int count) {
-        int pos = 0;
+    protected int play_(short[] out, int off, int count) {
+        int pos = off;
+        while (true) {
+            int n = buf.readSamples(out, pos, count);
+            mixSamples(out, pos, n);
+
+            pos += n;
+            count -= n;
+            if (count <= 0)
+                break;
+
+            if (trackEnded) {
+                java.util.Arrays.fill(out, pos, pos + count, (short) 0);
+                break;
+            }
+
+            int clocks = runMsec(bufLength);
+            buf.endFrame(clocks);
+        }
+        return pos - off;
+    }
+
+    /** Blip buffers are read without clamping */
+    @Override
+    protected int playFloat_(float[] out, int off, int count) {
+        int pos = off;
         while (true) {
             int n = buf.readSamples(out, pos, count);
             mixSamples(out, pos, n);
@@ -53,7 +99,27 @@ public abstract class ClassicEmu extends MusicEmu {
                 break;
 
             if (trackEnded) {
-                java.util.Arrays.fill(out, pos, pos + count, (byte) 0);
+                java.util.Arrays.fill(out, pos, pos + count, 0f);
+                break;
+            }
+
+            int clocks = runMsec(bufLength);
+            buf.endFrame(clocks);
+        }
+        return pos - off;
+    }
+
+    /** Reads center only when left and right are never written, otherwise mixes them down */
+    @Override
+    protected int playMono_(short[] out, int off, int count) {
+        int pos = 0;
+        while (true) {
+            pos += buf.readSamplesMono(out, off + pos, count - pos);
+            if (pos >= count)
+                break;
+
+            if (trackEnded) {
+                java.util.Arrays.fill(out, off + pos, off + count, (short) 0);
                 break;
             }
 
@@ -63,16 +129,72 @@ public abstract class ClassicEmu extends MusicEmu {
         return pos;
     }
 
+    /**
+     * Runs emulation with the buffers muted, samples are thrown away without mixing.
+     * The last part is played normally so that the buffers are settled.
+     * For silence detection, a frame is silent if the output didn't change in it,
+     * see {@link #mutedOutputChanged()}.
+     */
+    @Override
+    protected int skip_(int count) {
+        int remain = count;
+        if (remain > skipThreshold) {
+            buf.setMuted(true);
+            try {
+                while (!trackEnded) {
+                    remain -= buf.removeSamples(remain - skipThreshold / 2);
+                    if (remain <= skipThreshold / 2)
+                        break;
+
+                    int avail = buf.samplesAvail();
+                    int clocks = runMsec(bufLength);
+                    buf.endFrame(clocks);
+                    detectSilence((buf.samplesAvail() - avail) >> 1, mutedOutputChanged());
+                }
+                // up to where the track ended, as played
+                if (trackEnded)
+                    remain -= buf.removeSamples(remain & ~1);
+            } finally {
+                buf.setMuted(false);
+            }
+        }
+        return count - remain + super.skip_(remain);
+    }
+
+    /**
+     * True if the output changed while muted since the last call.
+     * Override if the emulator outputs other than through the blip buffers.
+     */
+    protected boolean mutedOutputChanged() {
+        return buf.takeMutedDelta();
+    }
+
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        buf.saveState(out);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        buf.restoreState(in);
+    }
+
     protected final int countSamples(int time) {
         return buf.countSamples(time);
     }
 
     // derived class can override and mix its own samples here
-    protected abstract void mixSamples(byte[] out, int offset, int count);
+    protected abstract void mixSamples(short[] out, int offset, int count);
+
+    // same as above for float output, where 1.0 is full scale of 16 bits
+    protected void mixSamples(float[] out, int offset, int count) {
+    }
 
     // internal
 
     static final int bufLength = 32;
+    /** samples, longer skip than this runs muted */
+    static final int skipThreshold = 30000;
     protected StereoBuffer buf = new StereoBuffer();
 
     protected void setClockRate(int rate) {
@@ -23,7 +23,6 @@ import java.lang.System.Logger.Level;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ServiceLoader;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import javax.sound.sampled.AudioFormat;
@@ -205,6 +204,12 @@ logger.log(Level.ERROR, e.getMessage(), e);
         play();
     }
 
+    /**
+     * Sets the track to play, where 0 is the first track.
+     *
+     * @throws IllegalArgumentException track is not 0 to {@link #getTrackCount()} - 1,
+     *         before 0.0.8 {@link #getTrackCount()} itself was accepted, e.g. 1 for a single track VGM
+     */
     public void setTrack(int track) {
         emu.startTrack(track);
     }
@@ -281,6 +286,4 @@ logger.log(Level.DEBUG, "PLAY: endless: " + emu.isEndlessLoopFlag());
 
     protected MusicEmu emu;
     private float playRateFactor = 1;
-
-    protected static final ServiceLoader<MusicEmu> serviceLoader = ServiceLoader.load(MusicEmu.class);
 }
@@ -22,6 +22,13 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
 
 import static java.lang.System.getLogger;
 
@@ -58,10 +65,44 @@ public abstract class MusicEmu {
 
     /** Loads music file into emulator. Might keep reference to data. */
     public void loadFile(byte[] data) {
+        loadFile(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Loads music file from position to limit of data into emulator. Might keep reference to data.
+     * A mapped file (see {@link libgme.util.DataReader#map}) is not copied by emulators
+     * which read it directly, others copy it once.
+     */
+    public void loadFile(ByteBuffer data) {
+        data = data.slice();
+        trackEnded = true;
+        int trackCount = parseHeader(data);
+        loaded(trackCount, identify(data));
+    }
+
+    /**
+     * Identifies a file in saved states by CRC-32 of the whole data, which is read once when loaded.
+     * Emulators reading a mapped file as played may identify it by less, see {@link libgme.vgm.VgmEmu}.
+     *
+     * @param data the file from position 0 to limit
+     */
+    protected int identify(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().position(0));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * For emulators which read files by themselves instead of {@link #parseHeader}.
+     *
+     * @param crc identifies the file in saved states, see {@link #identify(ByteBuffer)}
+     */
+    protected final void loaded(int trackCount, int crc) {
         trackEnded = true;
         currentTrack = 0;
         currentTime = 0;
-        trackCount = parseHeader(data);
+        this.trackCount = trackCount;
+        fileCrc = crc;
     }
 
     /** Number of tracks */
@@ -69,9 +110,14 @@ public abstract class MusicEmu {
         return trackCount;
     }
 
-    /** Starts track, where 0 is first track */
+    /**
+     * Starts track, where 0 is first track.
+     *
+     * @throws IllegalArgumentException track is not 0 to {@link #trackCount()} - 1,
+     *         {@link #trackCount()} itself was accepted before 0.0.8
+     */
     public void startTrack(int track) {
-        if (track < 0 || track > trackCount)
+        if (track < 0 || track >= trackCount)
             throw new IllegalArgumentException("Invalid track");
 
         trackEnded = false;
@@ -79,6 +125,8 @@ public abstract class MusicEmu {
         currentTime = 0;
         fadeStart = 0x4000_0000; // far into the future
         fadeStep = 1;
+        silenceCount = 0;
+        trackLooped = false;
     }
 
     /** Currently started track */
@@ -86,22 +134,273 @@ public abstract class MusicEmu {
         return currentTrack;
     }
 
+    /**
+     * Outputs in mono instead of stereo, counts of play(), skip() and position()
+     * are in mono samples then. Call before startTrack().
+     *
+     * @param mono default false
+     */
+    public final void setMono(boolean mono) {
+        channels = mono ? 1 : 2;
+    }
+
+    /** 1: mono, 2: stereo */
+    public final int channelCount() {
+        return channels;
+    }
+
     /**
      * Generates at most count samples into out and returns
      * number of samples written. If track has ended, fills
      * buffer with silence.
+     *
+     * @param out big-endian 16-bit samples, packed from {@link #play(short[], int, int)}
      */
     public final int play(byte[] out, int count) {
+        if (samples.length < count)
+            samples = new short[count];
+        count = play(samples, 0, count);
+        packSamples(samples, out, count);
+        return count;
+    }
+
+    /**
+     * Generates at most count samples and packs them into out [off] as 16-bit in the byte order,
+     * a short array of the size is the only buffer in between.
+     *
+     * @return number of samples written
+     * @see #play(short[], int, int)
+     */
+    public final int play(byte[] out, int off, int count, ByteOrder order) {
+        if (samples.length < count)
+            samples = new short[count];
+        count = play(samples, 0, count);
+        packSamples(samples, out, off, count, order);
+        return count;
+    }
+
+    /**
+     * Generates at most count float samples and packs them into out [off] as 32-bit in the byte order,
+     * a float array of the size is the only buffer in between.
+     *
+     * @return number of samples written
+     * @see #play(float[], int, int)
+     */
+    public final int playFloat(byte[] out, int off, int count, ByteOrder order) {
+        if (floats.length < count)
+            floats = new float[count];
+        count = play(floats, 0, count);
+        packFloats(floats, out, off, count, order);
+        return count;
+    }
+
+    /**
+     * Generates at most count samples into out [off] and returns
+     * number of samples written. If track has ended, fills
+     * buffer with silence.
+     */
+    public final int play(short[] out, int off, int count) {
+        if (!trackEnded) {
+            count = channels == 2 ? play_(out, off, count) : playMono_(out, off, count);
+            if (silenceLength > 0)
+                detectSilence(out, off, count, channels);
+            if ((currentTime += count / channels) > fadeStart)
+                applyFade(out, off, count);
+        } else {
+            java.util.Arrays.fill(out, off, off + count, (short) 0);
+        }
+        return count;
+    }
+
+    /**
+     * Generates at most count 32 bit float samples into out [off], 1.0 is the full scale of 16 bit output.
+     * Emulators supporting it output without clamping, so that downstream processing has headroom.
+     *
+     * @return number of samples written
+     * @see #play(short[], int, int)
+     */
+    public final int play(float[] out, int off, int count) {
         if (!trackEnded) {
-            count = play_(out, count);
-            if ((currentTime += count >> 1) > fadeStart)
-                applyFade(out, count);
+            count = channels == 2 ? playFloat_(out, off, count) : downmix(out, off, count);
+            if (silenceLength > 0)
+                detectSilence(out, off, count, channels);
+            if ((currentTime += count / channels) > fadeStart)
+                applyFade(out, off, count);
         } else {
-            java.util.Arrays.fill(out, 0, count * 2, (byte) 0);
+            java.util.Arrays.fill(out, off, off + count, 0f);
         }
         return count;
     }
 
+    /**
+     * Generates float samples into remaining of out, rounded down to whole frames.
+     *
+     * @return number of samples written, the position of out is advanced by it
+     * @see #play(float[], int, int)
+     */
+    public final int play(FloatBuffer out) {
+        int count = out.remaining() / channels * channels;
+        int n;
+        if (out.hasArray()) {
+            n = play(out.array(), out.arrayOffset() + out.position(), count);
+            out.position(out.position() + n);
+        } else {
+            if (floats.length < count)
+                floats = new float[count];
+            n = play(floats, 0, count);
+            out.put(floats, 0, n);
+        }
+        return n;
+    }
+
+    /**
+     * Generates samples into remaining of out, rounded down to whole frames.
+     *
+     * @return number of samples written, the position of out is advanced by it
+     */
+    public final int play(ShortBuffer out) {
+        int count = out.remaining() / channels * channels;
+        int n;
+        if (out.hasArray()) {
+            n = play(out.array(), out.arrayOffset() + out.position(), count);
+            out.position(out.position() + n);
+        } else {
+            if (samples.length < count)
+                samples = new short[count];
+            n = play(samples, 0, count);
+            out.put(samples, 0, n);
+        }
+        return n;
+    }
+
+    /**
+     * Skips count samples without output, much faster than playing them on most emulators.
+     *
+     * @return number of samples skipped, less than count if the track has ended
+     */
+    public final long skip(long count) {
+        // skip_() is always in stereo samples
+        long skipped = 0;
+        count = count / channels * 2;
+        while (skipped < count && !trackEnded) {
+            int n = skip_((int) Math.min(count - skipped, maxSkipCount));
+            if (n <= 0)
+                break;
+            skipped += n;
+            if ((currentTime += n >> 1) > fadeStart &&
+                    intLog((currentTime - fadeStart) / fadeBlockSize, fadeStep, gainUnit) < (gainUnit >> fadeShift))
+                setTrackEnded();
+        }
+        return skipped / 2 * channels;
+    }
+
+    /**
+     * Seeks to the position in samples from the start of current track.
+     * Seeking backward restarts the track, fade set by setFade() is kept.
+     */
+    public final void seek(long samples) {
+        if (samples < position()) {
+            int fadeStart = this.fadeStart;
+            int fadeStep = this.fadeStep;
+            startTrack(currentTrack);
+            this.fadeStart = fadeStart;
+            this.fadeStep = fadeStep;
+        }
+        skip(samples - position());
+    }
+
+    /** Number of samples played or skipped since startTrack() */
+    public final long position() {
+        return currentTime * (long) channels;
+    }
+
+    /**
+     * Writes state of current track, so that playing can be resumed later or by another process.
+     * <p>
+     * The format is big endian and versioned, a header identifies the emulator,
+     * the loaded file and the sample rate. The file itself is not included.
+     * Call between play() calls.
+     *
+     * @throws java.nio.BufferOverflowException out doesn't have enough space, its position is undefined
+     * @throws UnsupportedOperationException the emulator doesn't support states
+     */
+    public final void saveState(ByteBuffer out) {
+        ByteOrder order = out.order();
+        out.order(ByteOrder.BIG_ENDIAN);
+        try {
+            out.putInt(stateMagic);
+            out.putShort(stateVersion);
+            byte[] name = getClass().getName().getBytes(StandardCharsets.US_ASCII);
+            out.putShort((short) name.length);
+            out.put(name);
+            out.putInt(fileCrc);
+            out.putInt(sampleRate);
+            out.putInt(currentTrack);
+            out.putInt(currentTime);
+            out.putInt(fadeStart);
+            out.putInt(fadeStep);
+            out.put((byte) (trackEnded ? 1 : 0));
+            int lengthPos = out.position();
+            out.putInt(0);
+            saveState_(out);
+            out.putInt(lengthPos, out.position() - lengthPos - 4);
+        } finally {
+            out.order(order);
+        }
+    }
+
+    /**
+     * Restores state written by {@link #saveState(ByteBuffer)}, the track is started again.
+     * The same file must be loaded at the same sample rate.
+     *
+     * @throws IllegalArgumentException state is broken or of other emulator, file, version or sample rate,
+     *         emulator is not changed except the state is broken after the header
+     * @throws UnsupportedOperationException the emulator doesn't support states
+     */
+    public final void restoreState(ByteBuffer in) {
+        ByteOrder order = in.order();
+        in.order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (in.getInt() != stateMagic)
+                throw new IllegalArgumentException("not a state");
+            int version = in.getShort();
+            if (version != stateVersion)
+                throw new IllegalArgumentException("unsupported version: " + version);
+            byte[] name = new byte[in.getShort()];
+            in.get(name);
+            if (!getClass().getName().equals(new String(name, StandardCharsets.US_ASCII)))
+                throw new IllegalArgumentException("state of other emulator: " + new String(name, StandardCharsets.US_ASCII));
+            if (in.getInt() != fileCrc)
+                throw new IllegalArgumentException("state of other file");
+            int sampleRate = in.getInt();
+            if (sampleRate != this.sampleRate)
+                throw new IllegalArgumentException("sample rate: " + sampleRate + ", but " + this.sampleRate);
+            int track = in.getInt();
+            int currentTime = in.getInt();
+            int fadeStart = in.getInt();
+            int fadeStep = in.getInt();
+            boolean trackEnded = in.get() != 0;
+            int length = in.getInt();
+            if (length > in.remaining())
+                throw new IllegalArgumentException("broken state");
+
+            startTrack(track);
+            int start = in.position();
+            restoreState_(in);
+            if (in.position() - start != length)
+                throw new IllegalArgumentException("broken state");
+
+            this.currentTime = currentTime;
+            this.fadeStart = fadeStart;
+            this.fadeStep = fadeStep;
+            this.trackEnded = trackEnded;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("broken state", e);
+        } finally {
+            in.order(order);
+        }
+    }
+
     /** Sets fade start and length, in seconds. Must be set after call to startTrack(). */
     public final void setFade(int start, int length) {
         fadeStart = sampleRate * Math.max(0, start);
@@ -120,6 +419,42 @@ public abstract class MusicEmu {
         return trackEnded;
     }
 
+    /**
+     * Ends the track when the output stays within &plusmn;threshold for msec.
+     * Silence at the start of the track counts as well. Call after setSampleRate().
+     * It works while skipping too, where emulators not making samples regard output
+     * not changing at all as silent.
+     *
+     * @param msec 0 disables, default
+     * @param threshold amplitude of 16 bit samples regarded as silent
+     */
+    public final void setSilenceDetection(int msec, int threshold) {
+        silenceLength = (int) Math.min((long) sampleRate * Math.max(0, msec) / 1000, Integer.MAX_VALUE / 2);
+        silenceThreshold = threshold;
+        silenceCount = 0;
+    }
+
+    /**
+     * Ends the track when the music is found to loop, after the first loop is played.
+     * Ignored while the endless loop flag is set.
+     * How a loop is found depends on the emulator, e.g. VGM loop offset or NSF/GBS
+     * memory repeating at a play routine call. Emulators not supporting it just play on.
+     *
+     * @param loopDetection default false
+     */
+    public void setLoopDetection(boolean loopDetection) {
+        this.loopDetection = loopDetection;
+    }
+
+    public boolean isLoopDetection() {
+        return loopDetection;
+    }
+
+    /** True if the music is found to loop since startTrack() */
+    public final boolean trackLooped() {
+        return trackLooped;
+    }
+
     public float setPlaybackRateFactor(float factor) {
         return 0;
     }
@@ -134,6 +469,19 @@ public abstract class MusicEmu {
 
     // protected
 
+    /**
+     * Sets settings callers can change between load and play back to the defaults,
+     * e.g. when {@link MusicEmuPool} takes the emulator back.
+     * Override to add settings of the emulator, calling super.
+     */
+    protected void reset() {
+        trackEnded = true;
+        setEndlessLoopFlag(Boolean.parseBoolean(System.getProperty("libgme.endless", "false")));
+        setLoopDetection(false);
+        setSilenceDetection(0, 0);
+        setMono(false);
+    }
+
     // must be defined in derived class
 
     /** @return real sampling rate define in the data */
@@ -142,6 +490,20 @@ public abstract class MusicEmu {
     /** @return the number of truck count stored in the data */
     protected abstract int parseHeader(byte[] in);
 
+    /**
+     * Override to read data without copying it into an array.
+     *
+     * @param in position is 0
+     * @return the number of truck count stored in the data
+     */
+    protected int parseHeader(ByteBuffer in) {
+        if (in.hasArray() && in.arrayOffset() == 0 && in.limit() == in.array().length)
+            return parseHeader(in.array());
+        byte[] data = new byte[in.limit()];
+        in.get(0, data);
+        return parseHeader(data);
+    }
+
     public abstract String getMagic();
 
     public boolean isSupported(InputStream in) throws IOException {
@@ -152,8 +514,113 @@ public abstract class MusicEmu {
         return isHeader(buf, magic);
     }
 
-    /** @return real last data position in the data */
-    protected abstract int play_(byte[] out, int count);
+    /**
+     * Generates count stereo samples into out [off].
+     *
+     * @return number of samples written
+     */
+    protected abstract int play_(short[] out, int off, int count);
+
+    /**
+     * Generates count stereo float samples into out [off], derived class can override
+     * to output without clamping. This converts play_() output.
+     *
+     * @return number of samples written
+     */
+    protected int playFloat_(float[] out, int off, int count) {
+        if (samples.length < count)
+            samples = new short[count];
+        short[] samples = this.samples;
+        int n = play_(samples, 0, count);
+        for (int i = 0; i < n; i++) {
+            out[off + i] = samples[i] * (1f / 0x8000);
+        }
+        return n;
+    }
+
+    /** Plays stereo by playFloat_() and mixes it down into count mono samples */
+    private int downmix(float[] out, int off, int count) {
+        if (floats.length < count * 2)
+            floats = new float[count * 2];
+        float[] stereo = this.floats;
+        int n = playFloat_(stereo, 0, count * 2) >> 1;
+        for (int i = 0; i < n; i++) {
+            out[off + i] = (stereo[i * 2] + stereo[i * 2 + 1]) * 0.5f;
+        }
+        return n;
+    }
+
+    /**
+     * Generates count mono samples, derived class can override to do it without mixing down stereo.
+     *
+     * @return number of samples written
+     */
+    protected int playMono_(short[] out, int off, int count) {
+        return downmix(out, off, count);
+    }
+
+    /** Plays stereo by play_() and mixes it down into count mono samples */
+    protected final int downmix(short[] out, int off, int count) {
+        if (stereo.length < count * 2)
+            stereo = new short[count * 2];
+        short[] stereo = this.stereo;
+        int n = play_(stereo, 0, count * 2) >> 1;
+        for (int i = 0; i < n; i++) {
+            out[off + i] = (short) ((stereo[i * 2] + stereo[i * 2 + 1]) >> 1);
+        }
+        return n;
+    }
+
+    /**
+     * Skips count samples, derived class can override to do it faster than playing.
+     *
+     * @return number of samples skipped
+     */
+    protected int skip_(int count) {
+        if (skipped.length < skipBlockSize)
+            skipped = new short[skipBlockSize];
+        short[] buf = skipped;
+        int remain = count;
+        while (remain > 0 && !trackEnded) {
+            int n = play_(buf, 0, Math.min(remain, skipBlockSize));
+            if (n <= 0)
+                break;
+            if (silenceLength > 0)
+                detectSilence(buf, 0, n, 2);
+            remain -= n;
+        }
+        return count - remain;
+    }
+
+    /**
+     * Writes emulation state of current track, the loaded file itself is not included.
+     * Called between play() calls.
+     *
+     * @throws UnsupportedOperationException the emulator doesn't support states
+     */
+    protected void saveState_(ByteBuffer out) {
+        throw new UnsupportedOperationException(getClass().getName());
+    }
+
+    /**
+     * Reads state written by {@link #saveState_(ByteBuffer)},
+     * the same file must be loaded at the same sample rate and the same track started.
+     *
+     * @throws UnsupportedOperationException the emulator doesn't support states
+     */
+    protected void restoreState_(ByteBuffer in) {
+        throw new UnsupportedOperationException(getClass().getName());
+    }
+
+    /**
+     * Tells the music has reached its loop point once, ends the track
+     * if loop detection is on and the endless loop flag is not.
+     */
+    protected void setTrackLooped() {
+        trackLooped = true;
+        if (loopDetection && !endlessLoopFlag)
+            setTrackEnded();
+    }
 
     /** Sets end of track flag and stops emulating file */
     protected void setTrackEnded() {
@@ -174,6 +641,20 @@ public abstract class MusicEmu {
                 (in[pos + 3] & 0xff) << 24;
     }
 
+    /** Reads 16 bit little endian int starting at in [pos] */
+    protected static int getLE16(ByteBuffer in, int pos) {
+        return (in.get(pos) & 0xff) |
+                (in.get(pos + 1) & 0xff) << 8;
+    }
+
+    /** Reads 32 bit little endian int starting at in [pos] */
+    protected static int getLE32(ByteBuffer in, int pos) {
+        return (in.get(pos) & 0xff) |
+                (in.get(pos + 1) & 0xff) << 8 |
+                (in.get(pos + 2) & 0xff) << 16 |
+                (in.get(pos + 3) & 0xff) << 24;
+    }
+
     /** True if first bytes of file match expected string */
     protected static boolean isHeader(byte[] header, String expected) {
         for (int i = expected.length(); --i >= 0; ) {
@@ -183,6 +664,17 @@ public abstract class MusicEmu {
         return true;
     }
 
+    /** True if first bytes of file match expected string */
+    protected static boolean isHeader(ByteBuffer header, String expected) {
+        if (header.limit() < expected.length())
+            return false;
+        for (int i = expected.length(); --i >= 0; ) {
+            if ((byte) expected.charAt(i) != header.get(i))
+                return false;
+        }
+        return true;
+    }
+
     // private
 
     int sampleRate;
@@ -192,6 +684,33 @@ public abstract class MusicEmu {
     int fadeStart;
     int fadeStep;
     protected boolean trackEnded;
+    /** see {@link #setLoopDetection(boolean)} */
+    protected boolean loopDetection;
+    boolean trackLooped;
+    /** 1: mono, 2: stereo */
+    int channels = 2;
+    /** in sample frames, 0: disabled */
+    int silenceLength;
+    int silenceThreshold;
+    /** frames since the last loud one */
+    int silenceCount;
+    /** for downmix() */
+    private short[] stereo = new short[0];
+    /** for play() into bytes or a buffer without array */
+    private short[] samples = new short[0];
+    /** for play() into a float buffer without array or mono float */
+    private float[] floats = new float[0];
+    /** for skip_(), thrown away */
+    private short[] skipped = new short[0];
+    /** identity of the loaded file */
+    int fileCrc;
+
+    /** "GMES" */
+    static final int stateMagic = 0x474d4553;
+    static final short stateVersion = 1;
+
+    static final int skipBlockSize = 8192;
+    static final int maxSkipCount = 1 << 30;
 
     static final int fadeBlockSize = 512;
     static final int fadeShift = 8; // fade ends with gain at 1.0 / (1 << fadeShift)
@@ -206,19 +725,122 @@ public abstract class MusicEmu {
     static final int gainShift = 14;
     static final int gainUnit = 1 << gainShift;
 
-    /** Scales count big-endian 16-bit samples from io [pos*2] by gain/gainUnit */
-    static void scaleSamples(byte[] io, int pos, int count, int gain) {
-        pos <<= 1;
-        count = (count << 1) + pos;
+    /** Scales count samples from io [pos] by gain/gainUnit */
+    static void scaleSamples(short[] io, int pos, int count, int gain) {
+        count += pos;
+        do {
+            io[pos] = (short) ((io[pos] * gain) >> gainShift);
+        }
+        while (++pos < count);
+    }
+
+    /** Scales count float samples from io [pos] by gain/gainUnit */
+    static void scaleSamples(float[] io, int pos, int count, int gain) {
+        float g = (float) gain / gainUnit;
+        count += pos;
         do {
-            int s;
-            io[pos + 1] = (byte) (s = ((io[pos] << 8 | (io[pos + 1] & 0xff)) * gain) >> gainShift);
-            io[pos] = (byte) (s >> 8);
+            io[pos] *= g;
+        }
+        while (++pos < count);
+    }
+
+    /** Writes count samples as big-endian 16-bit */
+    static void packSamples(short[] in, byte[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            int s = in[i];
+            out[i * 2] = (byte) (s >> 8);
+            out[i * 2 + 1] = (byte) s;
+        }
+    }
+
+    /** Writes count samples as 16-bit in the byte order into out [off] */
+    static void packSamples(short[] in, byte[] out, int off, int count, ByteOrder order) {
+        if (order == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < count; i++) {
+                int s = in[i];
+                out[off + i * 2] = (byte) (s >> 8);
+                out[off + i * 2 + 1] = (byte) s;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int s = in[i];
+                out[off + i * 2] = (byte) s;
+                out[off + i * 2 + 1] = (byte) (s >> 8);
+            }
+        }
+    }
+
+    /** Writes count samples as 32-bit float in the byte order into out [off] */
+    static void packFloats(float[] in, byte[] out, int off, int count, ByteOrder order) {
+        boolean big = order == ByteOrder.BIG_ENDIAN;
+        for (int i = 0; i < count; i++) {
+            int s = Float.floatToRawIntBits(in[i]);
+            if (!big)
+                s = Integer.reverseBytes(s);
+            int p = off + i * 4;
+            out[p] = (byte) (s >> 24);
+            out[p + 1] = (byte) (s >> 16);
+            out[p + 2] = (byte) (s >> 8);
+            out[p + 3] = (byte) s;
+        }
+    }
+
+    /** Counts trailing silent frames of count samples of channels in io [off] */
+    private void detectSilence(short[] io, int off, int count, int channels) {
+        int i = count;
+        while (--i >= 0) {
+            int s = io[off + i];
+            if (s > silenceThreshold || s < -silenceThreshold)
+                break;
+        }
+        if (i < 0)
+            silenceCount += count / channels;
+        else
+            silenceCount = (count - 1 - i) / channels;
+        if (silenceCount >= silenceLength)
+            setTrackEnded();
+    }
+
+    /** Same as for 16 bit, threshold is scaled */
+    private void detectSilence(float[] io, int off, int count, int channels) {
+        float threshold = silenceThreshold * (1f / 0x8000);
+        int i = count;
+        while (--i >= 0) {
+            float s = io[off + i];
+            if (s > threshold || s < -threshold)
+                break;
+        }
+        if (i < 0)
+            silenceCount += count / channels;
+        else
+            silenceCount = (count - 1 - i) / channels;
+        if (silenceCount >= silenceLength)
+            setTrackEnded();
+    }
+
+    /**
+     * For skip_() running without samples, counts frames as silent unless the output changed in them.
+     * Does nothing unless silence detection is set.
+     */
+    protected final void detectSilence(int frames, boolean changed) {
+        if (silenceLength <= 0)
+            return;
+        silenceCount = changed ? 0 : silenceCount + frames;
+        if (silenceCount >= silenceLength)
+            setTrackEnded();
+    }
+
+    private void applyFade(float[] io, int off, int count) {
+        for (int i = 0; i < count; i += fadeBlockSize) {
+            int gain = intLog((currentTime + i - fadeStart) / fadeBlockSize, fadeStep, gainUnit);
+            if (gain < (gainUnit >> fadeShift))
+                setTrackEnded();
+
+            scaleSamples(io, off + i, Math.min(count - i, fadeBlockSize), gain);
         }
-        while ((pos += 2) < count);
     }
 
-    private void applyFade(byte[] io, int count) {
+    private void applyFade(short[] io, int off, int count) {
         // Apply successively smaller gains based on time since fade start
         for (int i = 0; i < count; i += fadeBlockSize) {
             // logarithmic progression
@@ -229,7 +851,7 @@ public abstract class MusicEmu {
             int n = count - i;
             if (n > fadeBlockSize)
                 n = fadeBlockSize;
-            scaleSamples(io, i, n, gain);
+            scaleSamples(io, off + i, n, gain);
         }
     }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Creates independent {@link MusicEmu} instances for a music file format.
+ * <p>
+ * Emulators are registered as {@code META-INF/services/libgme.MusicEmu}.
+ * The format is detected once, then {@link #create()} returns a new emulator
+ * every time, so any number of threads can decode concurrently without sharing
+ * emulator state. Factories are immutable and thread safe.
+ * <pre>
+ *  MusicEmuFactory factory = MusicEmuFactory.of(in);
+ *  MusicEmu emu = factory.create();
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class MusicEmuFactory {
+
+    private static final Logger logger = getLogger(MusicEmuFactory.class.getName());
+
+    /** one factory per registered emulator */
+    private static final List<MusicEmuFactory> factories = ServiceLoader.load(MusicEmu.class).stream()
+            .map(MusicEmuFactory::new)
+            .toList();
+
+    private final ServiceLoader.Provider<MusicEmu> provider;
+
+    /**
+     * used only for format detection, never loaded nor played.
+     * {@link MusicEmu#getMagic()} etc. don't touch emulation state.
+     */
+    private final MusicEmu prototype;
+
+    private MusicEmuFactory(ServiceLoader.Provider<MusicEmu> provider) {
+        this.provider = provider;
+        this.prototype = provider.get();
+    }
+
+    /** Creates a new emulator instance */
+    public MusicEmu create() {
+        return provider.get();
+    }
+
+    /** Emulator class this factory creates */
+    public Class<? extends MusicEmu> type() {
+        return provider.type();
+    }
+
+    /** @see MusicEmu#getMagic() */
+    public String getMagic() {
+        return prototype.getMagic();
+    }
+
+    @Override
+    public String toString() {
+        return "MusicEmuFactory[" + type().getName() + "]";
+    }
+
+    /** All registered factories */
+    public static List<MusicEmuFactory> factories() {
+        return factories;
+    }
+
+    /**
+     * Detects the format by magic.
+     *
+     * @param is mark must be supported, the position is not changed
+     * @return nullable
+     * @throws IllegalArgumentException mark is not supported
+     */
+    public static MusicEmuFactory of(InputStream is) {
+        if (!is.markSupported()) {
+            throw new IllegalArgumentException("stream is not supported mark: " + is);
+        }
+
+        for (MusicEmuFactory factory : factories) {
+            try {
+                is.mark(factory.getMagic().length());
+
+                if (factory.prototype.isSupported(is)) {
+                    return factory;
+                }
+            } catch (IOException e) {
+logger.log(Level.TRACE, factory + ": " + e);
+            } finally {
+                try {
+                    is.reset();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Detects the format by magic.
+     *
+     * @return nullable
+     */
+    public static MusicEmuFactory of(byte[] data) {
+        for (MusicEmuFactory factory : factories) {
+            if (data.length >= factory.getMagic().length() && MusicEmu.isHeader(data, factory.getMagic())) {
+                return factory;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Detects the format by magic at position 0.
+     *
+     * @return nullable
+     */
+    public static MusicEmuFactory of(ByteBuffer data) {
+        for (MusicEmuFactory factory : factories) {
+            if (MusicEmu.isHeader(data, factory.getMagic())) {
+                return factory;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Detects the format by file name.
+     *
+     * @param name upper case file name
+     * @return nullable
+     */
+    public static MusicEmuFactory ofName(String name) {
+        for (MusicEmuFactory factory : factories) {
+logger.log(Level.TRACE, factory + ", " + name);
+            if (factory.prototype.isSupportedByName(name)) {
+                return factory;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param name upper case file name
+     * @see MusicEmu#isGunzipNeeded(String)
+     */
+    public static boolean isGunzipNeeded(String name) {
+        for (MusicEmuFactory factory : factories) {
+            if (factory.prototype.isGunzipNeeded(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
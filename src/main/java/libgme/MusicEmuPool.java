@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Recycles {@link MusicEmu} instances keyed by format and sample rate.
+ * <p>
+ * Creating an emulator allocates its sound chips, blip buffers and tables,
+ * a pooled emulator skips that and only loads the file again.
+ * An emulator acquired from the pool is always freshly loaded, so no state of
+ * the previous file is visible, start a track as usual then give it back.
+ * <pre>
+ *  MusicEmuPool pool = new MusicEmuPool();
+ *  MusicEmu emu = pool.acquire(data, 44100);
+ *  try {
+ *      emu.startTrack(0);
+ *      ...
+ *  } finally {
+ *      pool.release(emu);
+ *  }
+ * </pre>
+ * Thread safe, an emulator itself must be used by one thread at a time.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class MusicEmuPool {
+
+    private static final Logger logger = getLogger(MusicEmuPool.class.getName());
+
+    /** default max idle emulators per key */
+    public static final int defaultMaxIdle = Runtime.getRuntime().availableProcessors();
+
+    /** @param sampleRate requested one, not the actual one */
+    private record Key(Class<? extends MusicEmu> type, int sampleRate) {
+    }
+
+    /** idle emulators with their count, deque size() is not constant time */
+    private static final class Idle {
+        final Deque<MusicEmu> emus = new ConcurrentLinkedDeque<>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    private final Map<Key, Idle> idles = new ConcurrentHashMap<>();
+
+    /** sample rate requested when the emulator was acquired */
+    private final Map<MusicEmu, Integer> sampleRates = new ConcurrentHashMap<>();
+
+    private final int maxIdle;
+
+    public MusicEmuPool() {
+        this(defaultMaxIdle);
+    }
+
+    /** @param maxIdle max idle emulators kept per format and sample rate, extra ones are discarded */
+    public MusicEmuPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Gets an emulator with the data loaded.
+     *
+     * @param data whole music file, not compressed
+     * @throws IllegalArgumentException unsupported or broken data
+     */
+    public MusicEmu acquire(byte[] data, int sampleRate) {
+        return acquire(ByteBuffer.wrap(data), sampleRate);
+    }
+
+    /**
+     * Gets an emulator with the data loaded, a mapped file is not copied by VGM.
+     *
+     * @param data whole music file from position 0, not compressed
+     * @throws IllegalArgumentException unsupported or broken data
+     */
+    public MusicEmu acquire(ByteBuffer data, int sampleRate) {
+        MusicEmuFactory factory = MusicEmuFactory.of(data);
+        if (factory == null)
+            throw new IllegalArgumentException("unsupported data");
+
+        Key key = new Key(factory.type(), sampleRate);
+        Idle idle = idles.computeIfAbsent(key, k -> new Idle());
+        MusicEmu emu = idle.emus.pollFirst();
+        if (emu != null) {
+            idle.count.decrementAndGet();
+logger.log(Level.TRACE, "reuse: " + key);
+        } else {
+            emu = factory.create();
+            emu.setSampleRate(sampleRate);
+logger.log(Level.DEBUG, "create: " + key);
+        }
+
+        // the emulator is dropped if loading fails, half loaded state must not come back
+        emu.loadFile(data);
+        sampleRates.put(emu, sampleRate);
+        return emu;
+    }
+
+    /**
+     * Gives back an emulator got by {@link #acquire}, it must not be used after this.
+     *
+     * @throws IllegalArgumentException the emulator is not from this pool
+     */
+    public void release(MusicEmu emu) {
+        Integer sampleRate = sampleRates.remove(emu);
+        if (sampleRate == null)
+            throw new IllegalArgumentException("not acquired from this pool: " + emu);
+
+        emu.reset();
+
+        Idle idle = idles.computeIfAbsent(new Key(emu.getClass(), sampleRate), k -> new Idle());
+        if (idle.count.incrementAndGet() <= maxIdle) {
+            idle.emus.offerFirst(emu);
+        } else {
+            idle.count.decrementAndGet();
+logger.log(Level.TRACE, "discard: " + emu.getClass().getName());
+        }
+    }
+
+    /** Number of idle emulators */
+    public int idleCount() {
+        return idles.values().stream().mapToInt(idle -> idle.count.get()).sum();
+    }
+
+    /** Discards all idle emulators */
+    public void clear() {
+        idles.clear();
+    }
+}
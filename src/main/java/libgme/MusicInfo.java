@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import libgme.gbs.GbsEmu;
+import libgme.nsf.NsfEmu;
+import libgme.spc.SpcEmu;
+import libgme.vgm.VgmEmu;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Tags and lengths of a music file, read from its header without creating an emulator.
+ * <ul>
+ *  <li>NSF, GBS ... header strings, the name is the title of the whole file</li>
+ *  <li>SPC ... ID666 tag, text and binary variants</li>
+ *  <li>VGM ... GD3 tag, total and loop samples of the header</li>
+ * </ul>
+ * Strings are null if absent. Durations are in microseconds, -1 if unknown.
+ *
+ * @param system name of the hardware
+ * @param game name of the game, or of the whole file
+ * @param title name of the track
+ * @param date free text, the release date for VGM, the dump date for SPC
+ * @param trackCount number of tracks in the file
+ * @param duration length of the track, including the fade out for SPC
+ * @param loopDuration length of the looped part of the track
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public record MusicInfo(String system, String game, String title, String author, String copyright,
+                        String dumper, String date, String comment,
+                        int trackCount, long duration, long loopDuration) {
+
+    private static final Logger logger = getLogger(MusicInfo.class.getName());
+
+    /** enough for all headers, SPC has the largest */
+    static final int headerSize = 0x100;
+
+    /** GD3 tags larger than this are broken */
+    static final int maxGd3Size = 0x10000;
+
+    /** sample rate of VGM sample counts */
+    static final int vgmRate = 44100;
+
+    /**
+     * Reads from the start of an uncompressed file. Only the header is read,
+     * except VGM whose tag is skipped to.
+     * If the input ends before a tag, the information is without it.
+     *
+     * @return null if the format is unknown
+     */
+    public static MusicInfo read(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(headerSize);
+        if (matches(header, NsfEmu.MAGIC) && header.length >= 0x80) {
+            return new MusicInfo("Nintendo NES", string(header, 0x0e, 32), string(header, 0x0e, 32),
+                    string(header, 0x2e, 32), string(header, 0x4e, 32), null, null, null,
+                    header[0x06] & 0xff, -1, -1);
+        } else if (matches(header, GbsEmu.MAGIC) && header.length >= 0x70) {
+            return new MusicInfo("Nintendo Game Boy", string(header, 0x10, 32), string(header, 0x10, 32),
+                    string(header, 0x30, 32), string(header, 0x50, 32), null, null, null,
+                    header[0x04] & 0xff, -1, -1);
+        } else if (matches(header, SpcEmu.MAGIC) && header.length >= 0x24) {
+            return spc(header);
+        } else if (matches(header, VgmEmu.MAGIC) && header.length >= 0x24) {
+            return vgm(header, in);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Reads from an uncompressed file in memory.
+     *
+     * @return null if the format is unknown
+     */
+    public static MusicInfo read(byte[] data) {
+        try {
+            return read(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * As {@link javax.sound.sampled.AudioFileFormat} properties, absent ones are not included.
+     * <ul>
+     *  <li>title, author, copyright, comment ... String</li>
+     *  <li>duration ... Long, microseconds</li>
+     *  <li>game, system, dumper, dateText ... String</li>
+     *  <li>tracks ... Integer</li>
+     *  <li>loop ... Long, microseconds of the looped part</li>
+     * </ul>
+     */
+    public Map<String, Object> toProperties() {
+        Map<String, Object> props = new HashMap<>();
+        put(props, "title", title);
+        put(props, "author", author);
+        put(props, "copyright", copyright);
+        put(props, "comment", comment);
+        put(props, "game", game);
+        put(props, "system", system);
+        put(props, "dumper", dumper);
+        put(props, "dateText", date);
+        props.put("tracks", trackCount);
+        if (duration >= 0)
+            props.put("duration", duration);
+        if (loopDuration >= 0)
+            props.put("loop", loopDuration);
+        return props;
+    }
+
+    /** Number of frames of the track at sampleRate, -1 if unknown */
+    public long frameLength(int sampleRate) {
+        return duration < 0 ? -1 : duration * sampleRate / 1_000_000;
+    }
+
+    private static void put(Map<String, Object> props, String key, String value) {
+        if (value != null)
+            props.put(key, value);
+    }
+
+    private static MusicInfo spc(byte[] h) {
+        if (h[0x23] != 26 || h.length < headerSize) {
+            return new MusicInfo("Super Nintendo", null, null, null, null, null, null, null, 1, -1, -1);
+        }
+
+        boolean text = isTextId666(h);
+        long seconds;
+        long fade;
+        String date;
+        String author;
+        if (text) {
+            seconds = number(h, 0xa9, 3);
+            fade = number(h, 0xac, 5);
+            date = string(h, 0x9e, 11);
+            author = string(h, 0xb1, 32);
+        } else {
+            seconds = (h[0xa9] & 0xff) | (h[0xaa] & 0xff) << 8 | (h[0xab] & 0xff) << 16;
+            fade = MusicEmu.getLE32(h, 0xac) & 0xffff_ffffL;
+            int year = MusicEmu.getLE16(h, 0xa0);
+            date = year == 0 ? null : "%04d/%02d/%02d".formatted(year, h[0x9f] & 0xff, h[0x9e] & 0xff);
+            author = string(h, 0xb0, 32);
+        }
+logger.log(Level.TRACE, "id666: " + (text ? "text" : "binary") + ", " + seconds + "s, fade " + fade + "ms");
+        long duration = seconds == 0 ? -1 : (seconds * 1000 + fade) * 1000;
+        return new MusicInfo("Super Nintendo", string(h, 0x4e, 32), string(h, 0x2e, 32), author, null,
+                string(h, 0x6e, 16), date, string(h, 0x7e, 32), 1, duration, -1);
+    }
+
+    /**
+     * The variant is not marked, text one has only digits in the length fields,
+     * and no control characters in the date field.
+     */
+    static boolean isTextId666(byte[] h) {
+        for (int i = 0xa9; i <= 0xb0; i++) {
+            if (h[i] != 0 && (h[i] < '0' || h[i] > '9'))
+                return false;
+        }
+        for (int i = 0x9e; i <= 0xa8; i++) {
+            if (h[i] != 0 && (h[i] & 0xff) < 0x20)
+                return false;
+        }
+        return true;
+    }
+
+    private static MusicInfo vgm(byte[] h, InputStream in) throws IOException {
+        long total = MusicEmu.getLE32(h, 0x18) & 0xffff_ffffL;
+        long loop = MusicEmu.getLE32(h, 0x20) & 0xffff_ffffL;
+        long duration = total == 0 ? -1 : total * 1_000_000 / vgmRate;
+        long loopDuration = loop == 0 ? -1 : loop * 1_000_000 / vgmRate;
+
+        String[] gd3 = null;
+        int offset = MusicEmu.getLE32(h, 0x14);
+        if (offset > 0) {
+            try {
+                gd3 = gd3(h, in, 0x14 + offset);
+            } catch (EOFException e) {
+logger.log(Level.TRACE, "gd3 is not reached: " + e);
+            }
+        }
+        if (gd3 == null) {
+            return new MusicInfo(null, null, null, null, null, null, null, null, 1, duration, loopDuration);
+        }
+        return new MusicInfo(gd3[4], gd3[2], gd3[0], gd3[6], null, gd3[9], gd3[8], gd3[10], 1, duration, loopDuration);
+    }
+
+    /**
+     * Reads the GD3 tag, the input is positioned after header.
+     *
+     * @return 11 strings, english ones fall back to japanese ones, null if broken
+     * @throws EOFException the input ends before the tag
+     */
+    private static String[] gd3(byte[] header, InputStream in, int offset) throws IOException {
+        if (offset < header.length) {
+            in = new SequenceInputStream(new ByteArrayInputStream(header, offset, header.length - offset), in);
+        } else {
+            in.skipNBytes(offset - header.length);
+        }
+        byte[] h = in.readNBytes(12);
+        if (h.length < 12)
+            throw new EOFException("gd3 header");
+        int length = MusicEmu.getLE32(h, 8);
+        if (!matches(h, "Gd3 ") || length < 0 || length > maxGd3Size)
+            return null;
+        byte[] body = in.readNBytes(length);
+
+        String[] strings = new String[11];
+        int p = 0;
+        for (int i = 0; i < strings.length && p < body.length; i++) {
+            int start = p;
+            while (p + 1 < body.length && (body[p] != 0 || body[p + 1] != 0))
+                p += 2;
+            String s = new String(body, start, p - start, StandardCharsets.UTF_16LE).trim();
+            strings[i] = s.isEmpty() ? null : s;
+            p += 2;
+        }
+        // english, japanese pairs
+        for (int i = 0; i < 8; i += 2) {
+            if (strings[i] == null)
+                strings[i] = strings[i + 1];
+        }
+        return strings;
+    }
+
+    private static boolean matches(byte[] header, String magic) {
+        return header.length >= magic.length() && MusicEmu.isHeader(header, magic);
+    }
+
+    /** nul terminated, null if empty */
+    private static String string(byte[] b, int off, int len) {
+        int end = off;
+        while (end < off + len && b[end] != 0)
+            end++;
+        String s = new String(b, off, end - off, StandardCharsets.ISO_8859_1).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /** ascii digits, 0 if none */
+    private static long number(byte[] b, int off, int len) {
+        long n = 0;
+        for (int i = off; i < off + len && b[i] >= '0' && b[i] <= '9'; i++) {
+            n = n * 10 + (b[i] - '0');
+        }
+        return n;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Renders tracks of a {@link MusicEmu} straight into caller supplied buffers
+ * or channels, as fast as the emulator runs.
+ * <p>
+ * No javax.sound, no piped streams, the emulator writes large blocks straight
+ * into a heap {@link ShortBuffer}, others go through a buffer reused for the whole
+ * lifetime of the renderer.
+ * Output is 16 bit signed stereo interleaved at {@link MusicEmu#sampleRate()}.
+ * <pre>
+ *  MusicEmu emu = new NsfEmu();
+ *  emu.setSampleRate(44100);
+ *  emu.loadFile(data);
+ *  Renderer renderer = new Renderer(emu);
+ *  renderer.startTrack(0, 150, 8);
+ *  try (FileChannel fc = FileChannel.open(path, CREATE, WRITE)) {
+ *      renderer.render(fc, ByteOrder.LITTLE_ENDIAN);
+ *  }
+ * </pre>
+ * Not thread safe, as well as {@link MusicEmu}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class Renderer {
+
+    /** default block size in samples, 0.37 sec. at 44.1kHz stereo */
+    public static final int defaultBlockSize = 32 * 1024;
+
+    private final MusicEmu emu;
+
+    /** samples from the emulator */
+    private final short[] block;
+
+    /** block packed for byte outputs */
+    private ByteBuffer bytes;
+
+    /** samples rendered since {@link #startTrack} */
+    private long position;
+
+    /** samples to render at most, negative means until the track ends */
+    private long limit = -1;
+
+    public Renderer(MusicEmu emu) {
+        this(emu, defaultBlockSize);
+    }
+
+    /** @param blockSize samples per emulator call, rounded down to stereo pairs */
+    public Renderer(MusicEmu emu, int blockSize) {
+        if (blockSize < 2)
+            throw new IllegalArgumentException("blockSize: " + blockSize);
+        this.emu = emu;
+        this.block = new short[blockSize & ~1];
+    }
+
+    public MusicEmu getEmu() {
+        return emu;
+    }
+
+    /**
+     * Starts track, where 0 is first track.
+     *
+     * @param length seconds to play before fading out, 0 or negative plays until the emulator ends the track
+     * @param fade seconds of fade out after length
+     */
+    public void startTrack(int track, int length, int fade) {
+        emu.startTrack(track);
+        position = 0;
+        if (length > 0) {
+            emu.setFade(length, fade);
+            limit = (long) emu.sampleRate() * emu.channelCount() * (length + Math.max(0, fade));
+        } else {
+            limit = -1;
+        }
+    }
+
+    /** Samples rendered since {@link #startTrack} */
+    public long position() {
+        return position;
+    }
+
+    /** True if the track has ended or the length given to {@link #startTrack} has been rendered */
+    public boolean isEnded() {
+        return emu.trackEnded() || (limit >= 0 && position >= limit);
+    }
+
+    /** @return samples rendered in the block, 0 if ended */
+    private int renderBlock(int count) {
+        return renderBlock(block, 0, count);
+    }
+
+    /** @return samples rendered into out from offset, 0 if ended */
+    private int renderBlock(short[] out, int offset, int count) {
+        if (isEnded())
+            return 0;
+        if (limit >= 0 && count > limit - position)
+            count = (int) (limit - position);
+        count &= ~1;
+        if (count == 0)
+            return 0;
+        count = emu.play(out, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Renders samples until out is full or the track ends.
+     * A heap buffer is rendered into directly.
+     *
+     * @return number of samples written, -1 if the track has already ended
+     */
+    public int render(ShortBuffer out) {
+        if (isEnded())
+            return -1;
+
+        int total = 0;
+        if (out.hasArray()) {
+            int n;
+            while (out.remaining() >= 2 && (n = renderBlock(out.array(), out.arrayOffset() + out.position(), out.remaining())) > 0) {
+                out.position(out.position() + n);
+                total += n;
+            }
+            return total;
+        }
+        while (out.remaining() >= 2) {
+            int n = renderBlock(Math.min(out.remaining(), block.length));
+            if (n == 0)
+                break;
+            out.put(block, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Renders samples until out is full or the track ends.
+     * Samples are written in the byte order of out.
+     *
+     * @return number of bytes written, -1 if the track has already ended
+     */
+    public int render(ByteBuffer out) {
+        if (isEnded())
+            return -1;
+
+        int total = 0;
+        while (out.remaining() >= 4) {
+            int n = renderBlock(Math.min(out.remaining() / 2, block.length));
+            if (n == 0)
+                break;
+            out.asShortBuffer().put(block, 0, n);
+            out.position(out.position() + n * 2);
+            total += n * 2;
+        }
+        return total;
+    }
+
+    /**
+     * Renders the rest of the track into the channel, e.g. {@link java.nio.channels.FileChannel}.
+     *
+     * @param order byte order of the samples written
+     * @return number of bytes written
+     */
+    public long render(WritableByteChannel channel, ByteOrder order) throws IOException {
+        if (bytes == null)
+            bytes = ByteBuffer.allocate(block.length * 2);
+        ByteBuffer bb = bytes.order(order);
+        long total = 0;
+        int n;
+        while ((n = renderBlock(block.length)) > 0) {
+            bb.clear();
+            bb.asShortBuffer().put(block, 0, n);
+            bb.limit(n * 2);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+            total += n * 2;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Seeks in a track by restoring emulator snapshots.
+ * <p>
+ * A snapshot is taken every interval while the track is played or skipped,
+ * so seeking to a position already passed costs at most one interval of
+ * skipping instead of restarting the track.
+ * <pre>
+ *  SeekIndex index = new SeekIndex(emu, 5);
+ *  index.startTrack(0);
+ *  index.play(out, count);
+ *  ...
+ *  index.seek(position);
+ * </pre>
+ * The emulator must support states, see {@link MusicEmu#saveState_(java.nio.ByteBuffer)}.
+ * Not thread safe.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class SeekIndex {
+
+    private static final Logger logger = getLogger(SeekIndex.class.getName());
+
+    /** @param position samples from the start of the track */
+    private record Snapshot(long position, byte[] state) {
+    }
+
+    private final MusicEmu emu;
+
+    /** in samples */
+    private final long interval;
+
+    /** snapshot i is at position i * interval */
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    private ByteBuffer scratch = ByteBuffer.allocate(0x10000);
+
+    private short[] chunk = new short[0];
+
+    /**
+     * @param emu file loaded, mono or stereo is set
+     * @param seconds interval of snapshots
+     */
+    public SeekIndex(MusicEmu emu, int seconds) {
+        if (seconds <= 0)
+            throw new IllegalArgumentException("seconds: " + seconds);
+        this.emu = emu;
+        this.interval = (long) emu.sampleRate() * emu.channelCount() * seconds;
+    }
+
+    public MusicEmu emu() {
+        return emu;
+    }
+
+    /** Starts the track, snapshots of the previous track are discarded */
+    public void startTrack(int track) {
+        emu.startTrack(track);
+        snapshots.clear();
+        record();
+    }
+
+    /** @see MusicEmu#play(byte[], int) */
+    public int play(byte[] out, int count) {
+        if (chunk.length < count)
+            chunk = new short[count];
+        count = play(chunk, 0, count);
+        MusicEmu.packSamples(chunk, out, count);
+        return count;
+    }
+
+    /** @see MusicEmu#play(short[], int, int) */
+    public int play(short[] out, int off, int count) {
+        // split at boundaries, so that snapshots are just there
+        int done = 0;
+        while (done < count) {
+            int n = (int) Math.min(count - done, interval - emu.position() % interval);
+            done += emu.play(out, off + done, n);
+            record();
+        }
+        return done;
+    }
+
+    /**
+     * Seeks to the position in samples from the start of current track.
+     *
+     * @see MusicEmu#seek(long)
+     */
+    public void seek(long samples) {
+        samples -= samples % emu.channelCount();
+        int i = (int) Math.min(samples / interval, snapshots.size() - 1);
+        if (i < 0) {
+            // started not by this index
+            emu.seek(samples);
+            return;
+        }
+
+        long position = emu.position();
+        Snapshot snapshot = snapshots.get(i);
+        if (position > samples || position < snapshot.position) {
+            restore(snapshot);
+        }
+
+        while (emu.position() < samples && !emu.trackEnded()) {
+            long boundary = (emu.position() / interval + 1) * interval;
+            if (emu.skip(Math.min(boundary, samples) - emu.position()) <= 0)
+                break;
+            record();
+        }
+    }
+
+    /** Number of snapshots taken */
+    public int size() {
+        return snapshots.size();
+    }
+
+    /** Takes a snapshot if the emulator is just at the next one's position */
+    private void record() {
+        long position = emu.position();
+        if (emu.trackEnded() || position != snapshots.size() * interval)
+            return;
+
+        while (true) {
+            try {
+                scratch.clear();
+                emu.saveState_(scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+        byte[] state = new byte[scratch.position()];
+        scratch.flip().get(state);
+        snapshots.add(new Snapshot(position, state));
+logger.log(Level.TRACE, "snapshot: " + position + ", " + state.length + " bytes");
+    }
+
+    private void restore(Snapshot snapshot) {
+        emu.restoreState_(ByteBuffer.wrap(snapshot.state));
+        emu.currentTime = (int) (snapshot.position / emu.channelCount());
+        emu.trackEnded = false;
+logger.log(Level.TRACE, "restore: " + snapshot.position);
+    }
+}
@@ -20,11 +20,13 @@ package libgme;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 import libgme.util.DataReader;
+import libgme.vgm.VgmEmu;
 
 import static java.lang.System.getLogger;
 
@@ -67,8 +69,6 @@ public class VGMPlayer extends EmuPlayer {
         closeFile();
 
         if (!loadedPath.equals(path)) {
-            byte[] data = readFile(path);
-
             String name = path.toUpperCase();
             if (name.endsWith(".ZIP"))
                 name = path.toUpperCase();
@@ -80,7 +80,12 @@ public class VGMPlayer extends EmuPlayer {
             if (emu == null)
                 throw new IllegalArgumentException("invalid file");
             int actualSampleRate = emu.setSampleRate(sampleRate);
-            emu.loadFile(data);
+            if (emu instanceof VgmEmu vgm) {
+                // played as read, VGZ is inflated on the fly
+                vgm.loadFile(() -> new FileInputStream(path));
+            } else {
+                emu.loadFile(readFile(path));
+            }
 
             // now that new emulator is ready, replace old one
             setEmu(emu, actualSampleRate);
@@ -105,38 +110,20 @@ public class VGMPlayer extends EmuPlayer {
      * @return nullable
      */
     private static MusicEmu createEmu(String name) {
-        for (MusicEmu musicEmu : serviceLoader) {
-logger.log(Level.TRACE, musicEmu + ", " + name);
-            if (musicEmu.isSupportedByName(name)) {
-                return musicEmu;
-            }
-        }
-
-        return null;
+        MusicEmuFactory factory = MusicEmuFactory.ofName(name);
+        return factory != null ? factory.create() : null;
     }
 
-    private static boolean isGunzipNeeded(String name) {
-        for (MusicEmu musicEmu : serviceLoader) {
-            if (musicEmu.isGunzipNeeded(name)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /** Loads given URL and file within archive, and caches archive for future access */
-    private static byte[] readFile(String path) throws IOException {
-
-        InputStream in = new FileInputStream(path);
+    /** Loads given file, gunzipped ones are read into memory, others are mapped */
+    private static ByteBuffer readFile(String path) throws IOException {
 
         String name = path.toUpperCase();
 //logger.log(Level.TRACE, "Unzip " + url);
 
-        if (name.endsWith(".GZ") || isGunzipNeeded(name)) {
-            in = DataReader.openGZIP(in);
+        if (name.endsWith(".GZ") || MusicEmuFactory.isGunzipNeeded(name)) {
+            return ByteBuffer.wrap(DataReader.loadData(DataReader.openGZIP(new FileInputStream(path))));
         }
 
-        return DataReader.loadData(in);
+        return DataReader.map(Path.of(path));
     }
 }
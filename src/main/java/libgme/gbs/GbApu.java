@@ -18,7 +18,10 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
+import libgme.util.States;
 
 
 /**
@@ -90,6 +93,27 @@ public final class GbApu {
         }
     }
 
+    public void saveState(ByteBuffer out) {
+        out.putInt(frame_time);
+        out.putInt(last_time);
+        out.putInt(frame_phase);
+        States.putInts(out, regs);
+        for (GbOsc osc : oscs) {
+            osc.saveState(out);
+        }
+    }
+
+    public void restoreState(ByteBuffer in) {
+        frame_time = in.getInt();
+        last_time = in.getInt();
+        frame_phase = in.getInt();
+        States.getInts(in, regs);
+        for (GbOsc osc : oscs) {
+            osc.restoreState(in);
+            osc.output = outputs[osc.output_select];
+        }
+    }
+
     private void run_until(int end_time) {
         assert end_time >= last_time; // end_time must not be before previous time
         if (end_time == last_time)
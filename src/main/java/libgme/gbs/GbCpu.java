@@ -18,7 +18,10 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.ClassicEmu;
+import libgme.util.States;
 
 
 /**
@@ -101,6 +104,38 @@ public abstract class GbCpu extends ClassicEmu {
     int cz, ph;
     byte[] mem;
 
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.putInt(a);
+        out.putInt(bc);
+        out.putInt(de);
+        out.putInt(hl);
+        out.putInt(sp);
+        out.putInt(pc);
+        out.putInt(rstBase);
+        out.putInt(time);
+        out.putInt(cz);
+        out.putInt(ph);
+        States.putInts(out, pages);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        a = in.getInt();
+        bc = in.getInt();
+        de = in.getInt();
+        hl = in.getInt();
+        sp = in.getInt();
+        pc = in.getInt();
+        rstBase = in.getInt();
+        time = in.getInt();
+        cz = in.getInt();
+        ph = in.getInt();
+        States.getInts(in, pages);
+    }
+
     final void mapPage(int page, int offset) {
         assert 0 <= page && page < pageCount + 1;
         pages[page] = offset - page * pageSize;
@@ -18,6 +18,9 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
+
 public class GbEnv extends GbOsc {
 
     int env_delay;
@@ -34,6 +37,20 @@ public class GbEnv extends GbOsc {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(env_delay);
+        out.putInt(volume);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        env_delay = in.getInt();
+        volume = in.getInt();
+    }
+
     int reload_env_timer() {
         int raw = regs[2] & 7;
         env_delay = (raw != 0 ? raw : 8);
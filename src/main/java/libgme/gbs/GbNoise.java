@@ -18,6 +18,8 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -25,6 +27,18 @@ public final class GbNoise extends GbEnv {
 
     int bits;
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(bits);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        bits = in.getInt();
+    }
+
     @Override
     boolean write_register(int frame_phase, int reg, int old_data, int data) {
         if (reg == 3) {
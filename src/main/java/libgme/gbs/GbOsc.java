@@ -1,6 +1,9 @@
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
+import libgme.util.States;
 
 
 public class GbOsc {
@@ -33,6 +36,27 @@ public class GbOsc {
         }
     }
 
+    void saveState(ByteBuffer out) {
+        out.putInt(output_select);
+        States.putInts(out, regs);
+        out.putInt(vol_unit);
+        out.putInt(delay);
+        out.putInt(last_amp);
+        out.putInt(length);
+        out.putInt(enabled);
+    }
+
+    /** output has to be set by the apu */
+    void restoreState(ByteBuffer in) {
+        output_select = in.getInt();
+        States.getInts(in, regs);
+        vol_unit = in.getInt();
+        delay = in.getInt();
+        last_amp = in.getInt();
+        length = in.getInt();
+        enabled = in.getInt();
+    }
+
     void clock_length() {
         if ((regs[4] & length_enabled) != 0 && length != 0) {
             if (--length <= 0)
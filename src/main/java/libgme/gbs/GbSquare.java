@@ -18,6 +18,8 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -36,6 +38,18 @@ public class GbSquare extends GbEnv {
         delay = 0x40000000; // TODO: less hacky (never clocked until first trigger)
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(phase);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        phase = in.getInt();
+    }
+
     @Override
     boolean write_register(int frame_phase, int reg, int old_data, int data) {
         boolean result = super.write_register(frame_phase, reg, old_data, data);
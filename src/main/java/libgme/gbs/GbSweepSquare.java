@@ -18,6 +18,9 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
+
 public final class GbSweepSquare extends GbSquare {
 
     static final int period_mask = 0x70;
@@ -37,6 +40,24 @@ public final class GbSweepSquare extends GbSquare {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(sweep_freq);
+        out.putInt(sweep_delay);
+        out.putInt(sweep_enabled);
+        out.putInt(sweep_neg);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        sweep_freq = in.getInt();
+        sweep_delay = in.getInt();
+        sweep_enabled = in.getInt();
+        sweep_neg = in.getInt();
+    }
+
     void reload_sweep_timer() {
         sweep_delay = (regs[0] & period_mask) >> 4;
         if (sweep_delay == 0)
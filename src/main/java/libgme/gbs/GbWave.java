@@ -18,7 +18,10 @@
 
 package libgme.gbs;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
+import libgme.util.States;
 
 
 public final class GbWave extends GbOsc {
@@ -52,6 +55,24 @@ public final class GbWave extends GbOsc {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(wave_pos);
+        out.putInt(sample_buf_high);
+        out.putInt(sample_buf);
+        States.putInts(out, wave);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        wave_pos = in.getInt();
+        sample_buf_high = in.getInt();
+        sample_buf = in.getInt();
+        States.getInts(in, wave);
+    }
+
     @Override
     boolean write_register(int frame_phase, int reg, int old_data, int data) {
         final int max_len = 256;
@@ -19,7 +19,9 @@
 package libgme.gbs;
 
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 
+import libgme.util.LoopDetector;
 import libgme.util.MemPager;
 
 
@@ -56,11 +58,18 @@ public final class GbsEmu extends GbCpu {
     int nextPlay;
 
     GbApu apu = new GbApu();
+    /** ten minutes of play calls */
+    final LoopDetector loops = new LoopDetector(60 * 600);
 
     public static final String MAGIC = "GBS\u0001";
 
     @Override
     protected int parseHeader(byte[] in) {
+        return parseHeader(ByteBuffer.wrap(in));
+    }
+
+    @Override
+    protected int parseHeader(ByteBuffer in) {
         if (!isHeader(in, MAGIC))
             throw new IllegalArgumentException("Not a GBS file");
 
@@ -139,6 +148,7 @@ public final class GbsEmu extends GbCpu {
         ram[hiPage + 7] = header[timerModeOff];
         updateTimer();
         nextPlay = playPeriod;
+        loops.reset();
 
         a = track;
         pc = idleAddr;
@@ -147,7 +157,27 @@ public final class GbsEmu extends GbCpu {
     }
 
     @Override
-    protected void mixSamples(byte[] out, int offset, int count) {
+    protected void mixSamples(short[] out, int offset, int count) {
+    }
+
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.put(ram, 0, ramSize);
+        out.putInt(endTime);
+        out.putInt(playPeriod);
+        out.putInt(nextPlay);
+        apu.saveState(out);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        in.get(ram, 0, ramSize);
+        endTime = in.getInt();
+        playPeriod = in.getInt();
+        nextPlay = in.getInt();
+        apu.restoreState(in);
     }
 
     @Override
@@ -178,6 +208,8 @@ public final class GbsEmu extends GbCpu {
             }
 
             nextPlay += playPeriod;
+            if (loopDetection && !trackLooped() && loops.update(ram, 0, ramSize) > 0)
+                setTrackLooped();
             cpuCall(getLE16(header, playAddrOff));
         }
 
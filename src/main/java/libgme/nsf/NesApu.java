@@ -18,6 +18,8 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -160,6 +162,30 @@ public final class NesApu {
         lastTime -= endTime;
     }
 
+    public void saveState(ByteBuffer out) {
+        out.putInt(framePeriod);
+        out.putInt(frameTime);
+        out.putInt(framePhase);
+        out.putInt(lastTime);
+        out.putInt(frameMode);
+        out.putInt(irqFlag);
+        for (NesOsc osc : oscs) {
+            osc.saveState(out);
+        }
+    }
+
+    public void restoreState(ByteBuffer in) {
+        framePeriod = in.getInt();
+        frameTime = in.getInt();
+        framePhase = in.getInt();
+        lastTime = in.getInt();
+        frameMode = in.getInt();
+        irqFlag = in.getInt();
+        for (NesOsc osc : oscs) {
+            osc.restoreState(in);
+        }
+    }
+
     static final int[] length_table = {
             0x0A, 0xFE, 0x14, 0x02, 0x28, 0x04, 0x50, 0x06,
             0xA0, 0x08, 0x3C, 0x0A, 0x0E, 0x0C, 0x1A, 0x0E,
@@ -18,7 +18,10 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.ClassicEmu;
+import libgme.util.States;
 
 
 /**
@@ -86,6 +89,36 @@ public abstract class NesCpu extends ClassicEmu {
     int c, nz;
     byte[] mem;
 
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.putInt(a);
+        out.putInt(x);
+        out.putInt(y);
+        out.putInt(p);
+        out.putInt(s);
+        out.putInt(pc);
+        out.putInt(time);
+        out.putInt(c);
+        out.putInt(nz);
+        States.putInts(out, pages);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        a = in.getInt();
+        x = in.getInt();
+        y = in.getInt();
+        p = in.getInt();
+        s = in.getInt();
+        pc = in.getInt();
+        time = in.getInt();
+        c = in.getInt();
+        nz = in.getInt();
+        States.getInts(in, pages);
+    }
+
     final void mapPage(int page, int offset) {
         assert 0 <= page && page < pageCount + 1;
         pages[page] = offset - page * pageSize;
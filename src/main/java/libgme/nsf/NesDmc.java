@@ -18,7 +18,10 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
+import libgme.util.States;
 
 
 public final class NesDmc extends NesOsc {
@@ -59,6 +62,40 @@ public final class NesDmc extends NesOsc {
         period = 0x1AC;
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(address);
+        out.putInt(period);
+        out.putInt(buf);
+        out.putInt(bits_remain);
+        out.putInt(bits);
+        States.putBoolean(out, buf_full);
+        States.putBoolean(out, silence);
+        out.putInt(dac);
+        out.putInt(irqEnabled);
+        out.putInt(irqFlag);
+        States.putBoolean(out, palMode);
+        out.putInt(oscEnables);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        address = in.getInt();
+        period = in.getInt();
+        buf = in.getInt();
+        bits_remain = in.getInt();
+        bits = in.getInt();
+        buf_full = States.getBoolean(in);
+        silence = States.getBoolean(in);
+        dac = in.getInt();
+        irqEnabled = in.getInt();
+        irqFlag = in.getInt();
+        palMode = States.getBoolean(in);
+        oscEnables = in.getInt();
+    }
+
     static final int[] dmc_period_table = {
             428, 380, 340, 320, 286, 254, 226, 214, // NTSC
             190, 160, 142, 128, 106, 84, 72, 54,
@@ -18,6 +18,9 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
+
 public class NesEnvelope extends NesOsc {
 
     int envVolume;
@@ -52,4 +55,18 @@ public class NesEnvelope extends NesOsc {
         envDelay = 0;
         super.reset();
     }
+
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(envVolume);
+        out.putInt(envDelay);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        envVolume = in.getInt();
+        envDelay = in.getInt();
+    }
 }
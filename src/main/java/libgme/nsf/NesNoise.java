@@ -18,6 +18,8 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -76,4 +78,16 @@ public final class NesNoise extends NesEnvelope {
         lfsr = 1 << 14;
         super.reset();
     }
+
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(lfsr);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        lfsr = in.getInt();
+    }
 }
@@ -18,6 +18,11 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
+import libgme.util.States;
+
+
 public class NesOsc {
 
     static final int squareUnit = (int) (0.125 / 15 * 65535);
@@ -45,6 +50,22 @@ public class NesOsc {
         lastAmp = 0;
     }
 
+    void saveState(ByteBuffer out) {
+        States.putInts(out, regs);
+        States.putBooleans(out, regWritten);
+        out.putInt(lengthCounter);
+        out.putInt(delay);
+        out.putInt(lastAmp);
+    }
+
+    void restoreState(ByteBuffer in) {
+        States.getInts(in, regs);
+        States.getBooleans(in, regWritten);
+        lengthCounter = in.getInt();
+        delay = in.getInt();
+        lastAmp = in.getInt();
+    }
+
     int updateAmp(int amp) {
         int delta = amp - lastAmp;
         lastAmp = amp;
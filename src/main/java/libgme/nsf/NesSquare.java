@@ -18,6 +18,8 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -35,6 +37,20 @@ public final class NesSquare extends NesEnvelope {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(phase);
+        out.putInt(sweepDelay);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        phase = in.getInt();
+        sweepDelay = in.getInt();
+    }
+
     void clockSweep(int negative_adjust) {
         int sweep = regs[1];
 
@@ -18,6 +18,8 @@
 
 package libgme.nsf;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -34,6 +36,20 @@ public final class NesTriangle extends NesOsc {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(phase);
+        out.putInt(linearCounter);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        phase = in.getInt();
+        linearCounter = in.getInt();
+    }
+
     void clockLinearCounter() {
         if (regWritten[3])
             linearCounter = regs[0] & 0x7F;
@@ -19,7 +19,9 @@
 package libgme.nsf;
 
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 
+import libgme.util.LoopDetector;
 import libgme.util.MemPager;
 
 
@@ -60,6 +62,8 @@ public final class NsfEmu extends NesCpu {
     final byte[] header = new byte[0x80];
     final int[] initialBanks = new int[8];
     final NesApu apu = new NesApu();
+    /** ten minutes of play calls */
+    final LoopDetector loops = new LoopDetector(60 * 600);
 
     int palOnly;
     int endTime;
@@ -71,6 +75,11 @@ public final class NsfEmu extends NesCpu {
 
     @Override
     protected int parseHeader(byte[] in) {
+        return parseHeader(ByteBuffer.wrap(in));
+    }
+
+    @Override
+    protected int parseHeader(ByteBuffer in) {
         if (!isHeader(in, MAGIC))
             throw new IllegalArgumentException("Not an NSF file");
 
@@ -125,7 +134,7 @@ public final class NsfEmu extends NesCpu {
 
         apu.setOutput(buf.center());
 
-        return (header[trackCountOff] & 0xff) - 1;
+        return header[trackCountOff] & 0xff;
     }
 
     @Override
@@ -161,6 +170,7 @@ public final class NsfEmu extends NesCpu {
         }
 
         nextPlay = playPeriod;
+        loops.reset();
 
         // CPU
         a = track;
@@ -173,7 +183,25 @@ public final class NsfEmu extends NesCpu {
     }
 
     @Override
-    protected void mixSamples(byte[] out, int offset, int count) {
+    protected void mixSamples(short[] out, int offset, int count) {
+    }
+
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.put(ram, 0, ramSize);
+        out.putInt(endTime);
+        out.putInt(nextPlay);
+        apu.saveState(out);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        in.get(ram, 0, ramSize);
+        endTime = in.getInt();
+        nextPlay = in.getInt();
+        apu.restoreState(in);
     }
 
     @Override
@@ -209,6 +237,8 @@ public final class NsfEmu extends NesCpu {
             }
 
             nextPlay += playPeriod;
+            if (loopDetection && !trackLooped() && loops.update(ram, 0, ramSize) > 0)
+                setTrackLooped();
             cpuCall(getLE16(header, playAddrOff));
         }
 
@@ -18,6 +18,8 @@
 
 package libgme.spc;
 
+import java.nio.ByteBuffer;
+
 import libgme.MusicEmu;
 
 
@@ -55,6 +57,29 @@ public abstract class SpcCpu extends MusicEmu {
         time = 0;
     }
 
+    /** Doesn't call super, there is no blip buffer */
+    @Override
+    protected void saveState_(ByteBuffer out) {
+        out.putInt(a);
+        out.putInt(x);
+        out.putInt(y);
+        out.putInt(psw);
+        out.putInt(sp);
+        out.putInt(pc);
+        out.putInt(time);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        a = in.getInt();
+        x = in.getInt();
+        y = in.getInt();
+        psw = in.getInt();
+        sp = in.getInt();
+        pc = in.getInt();
+        time = in.getInt();
+    }
+
     public final void setPsw(int psw) {
         this.psw = psw;
     }
@@ -18,6 +18,12 @@
 
 package libgme.spc;
 
+import java.nio.ByteBuffer;
+
+import libgme.util.Kernels;
+import libgme.util.States;
+
+
 /**
  * Nintendo SPC-700 DSP emulator
  *
@@ -60,20 +66,88 @@ public final class SpcDsp {
         }
     }
 
+    // Writes internal state, ram is written by the owner
+    void saveState(ByteBuffer out) {
+        out.put(regs);
+        out.putInt(counter0.i);
+        out.putInt(counter1.i);
+        out.putInt(counter2.i);
+        out.putInt(counter3.i);
+        for (Voice v : voices) {
+            States.putInts(out, v.buf);
+            out.putInt(v.buf_pos);
+            out.putInt(v.interp_pos);
+            out.putInt(v.brr_addr);
+            out.putInt(v.brr_offset);
+            out.putInt(v.kon_delay);
+            out.putInt(v.env_mode);
+            out.putInt(v.env);
+            out.putInt(v.hidden_env);
+        }
+        States.putInts(out, echo_hist);
+        out.putInt(echo_hist_pos);
+        out.putInt(every_other_sample);
+        out.putInt(kon);
+        out.putInt(lfsr);
+        out.putInt(echo_offset);
+        out.putInt(echo_length);
+        out.putInt(new_kon);
+        out.putInt(t_koff);
+    }
+
+    // Reads state written by saveState(), must be initialized
+    void restoreState(ByteBuffer in) {
+        in.get(regs);
+        counter0.i = in.getInt();
+        counter1.i = in.getInt();
+        counter2.i = in.getInt();
+        counter3.i = in.getInt();
+        for (Voice v : voices) {
+            States.getInts(in, v.buf);
+            v.buf_pos = in.getInt();
+            v.interp_pos = in.getInt();
+            v.brr_addr = in.getInt();
+            v.brr_offset = in.getInt();
+            v.kon_delay = in.getInt();
+            v.env_mode = in.getInt();
+            v.env = in.getInt();
+            v.hidden_env = in.getInt();
+        }
+        States.getInts(in, echo_hist);
+        echo_hist_pos = in.getInt();
+        every_other_sample = in.getInt();
+        kon = in.getInt();
+        lfsr = in.getInt();
+        echo_offset = in.getInt();
+        echo_length = in.getInt();
+        new_kon = in.getInt();
+        t_koff = in.getInt();
+    }
+
     // Sets output volume, where 1.0 is normal and 2.0 is twice as loud
     public void setVolume(double v) {
         volume = (int) (v * 0x8000);
     }
 
     // Sets buffer to write samples into
-    public void setOutput(byte[] out) {
+    public void setOutput(short[] out, int off) {
         this.out = out;
-        out_pos = 0;
+        this.outFloat = null;
+        out_begin = off;
+        out_pos = off;
+    }
+
+    // Sets buffer to write samples into as float without clamping, 1.0 is full scale of 16 bits
+    public void setOutput(float[] out, int off) {
+        this.out = null;
+        this.outFloat = out;
+        out_begin = off;
+        out_pos = off;
     }
 
     // Number of samples written into buffer (stereo, so always a multiple of 2)
     public int sampleCount() {
-        return out_pos >> 1;
+        return out_pos - out_begin;
     }
 
     // Writes to DSP register
@@ -124,6 +198,10 @@ public final class SpcDsp {
     public void run(int sampleCount) {
         // locals are faster, and first three are more efficient to access
         byte[] regs = this.regs;
+        int[] fir_taps = this.fir_taps;
+        for (int i = 0; i < 8; i++) {
+            fir_taps[i * 2] = fir_taps[i * 2 + 1] = regs[r_fir + i * 0x10];
+        }
         Voice v;
 
         byte[] ram = this.ram;
@@ -142,9 +220,10 @@ public final class SpcDsp {
         int evoll = (regs[r_evoll] * volume) >> 15;
         int evolr = (regs[r_evolr] * volume) >> 15;
 
-        byte[] out = this.out;
+        short[] out = this.out;
+        float[] outFloat = this.outFloat;
         int out_pos = this.out_pos;
-        int out_end = out_pos + (sampleCount << 2);
+        int out_end = out_pos + (sampleCount << 1);
 
         do {
             // KON/KOFF reading
@@ -451,23 +530,10 @@ public final class SpcDsp {
             int echo_in_r = ram[echo_ptr + 3] << 8 | (ram[echo_ptr + 2] & 0xff);
             echo_hist[echo_hist_pos + 1] = echo_hist[echo_hist_pos + echo_hist_half + 1] = echo_in_r;
 
-            echo_in_l = regs[r_fir + 0x70] * echo_in_l +
-                    regs[r_fir] * echo_hist[echo_hist_pos + 2] +
-                    regs[r_fir + 0x10] * echo_hist[echo_hist_pos + 4] +
-                    regs[r_fir + 0x20] * echo_hist[echo_hist_pos + 6] +
-                    regs[r_fir + 0x30] * echo_hist[echo_hist_pos + 8] +
-                    regs[r_fir + 0x40] * echo_hist[echo_hist_pos + 10] +
-                    regs[r_fir + 0x50] * echo_hist[echo_hist_pos + 12] +
-                    regs[r_fir + 0x60] * echo_hist[echo_hist_pos + 14];
-
-            echo_in_r = regs[r_fir + 0x70] * echo_in_r +
-                    regs[r_fir] * echo_hist[echo_hist_pos + 3] +
-                    regs[r_fir + 0x10] * echo_hist[echo_hist_pos + 5] +
-                    regs[r_fir + 0x20] * echo_hist[echo_hist_pos + 7] +
-                    regs[r_fir + 0x30] * echo_hist[echo_hist_pos + 9] +
-                    regs[r_fir + 0x40] * echo_hist[echo_hist_pos + 11] +
-                    regs[r_fir + 0x50] * echo_hist[echo_hist_pos + 13] +
-                    regs[r_fir + 0x60] * echo_hist[echo_hist_pos + 15];
+            // echo_hist [echo_hist_pos + 16] is the newest, written just above
+            long echo_in = kernels.fir8(echo_hist, echo_hist_pos + 2, fir_taps);
+            echo_in_l = (int) (echo_in >> 32);
+            echo_in_r = (int) echo_in;
 
             // Echo out
             if ((flg & 0x20) == 0) {
@@ -485,16 +551,20 @@ public final class SpcDsp {
 
             // Sound out
             int l = (main_out_l * mvoll + echo_in_l * evoll) >> 14;
+            int r = (main_out_r * mvolr + echo_in_r * evolr) >> 14;
+            if (outFloat != null) {
+                outFloat[out_pos] = l * (1f / 0x8000);
+                outFloat[out_pos + 1] = r * (1f / 0x8000);
+                continue;
+            }
+
             if ((short) l != l) l = (l >> 24) ^ 0x7FFF; // 16-bit clamp
-            out[out_pos] = (byte) (l >> 8);
-            out[out_pos + 1] = (byte) l;
+            out[out_pos] = (short) l;
 
-            int r = (main_out_r * mvolr + echo_in_r * evolr) >> 14;
             if ((short) r != r) r = (r >> 24) ^ 0x7FFF; // 16-bit clamp
-            out[out_pos + 2] = (byte) (r >> 8);
-            out[out_pos + 3] = (byte) r;
+            out[out_pos + 1] = (short) r;
         }
-        while ((out_pos += 4) < out_end);
+        while ((out_pos += 2) < out_end);
 
         this.out_pos = out_pos;
     }
@@ -559,6 +629,9 @@ public final class SpcDsp {
     final Rate[] rates = new Rate[32];
     final Voice[] voices = new Voice[voice_count];
     final int[] echo_hist = new int[echo_hist_half * 2];
+    // FIR coefficients for left and right, set at run()
+    final int[] fir_taps = new int[16];
+    final Kernels kernels = Kernels.instance;
 
     int echo_hist_pos;
     int every_other_sample;    // toggles every sample
@@ -570,7 +643,9 @@ public final class SpcDsp {
     int t_koff;
     int volume;
     byte[] ram; // 64K shared RAM between DSP and SMP
-    byte[] out; // sample output
+    short[] out; // sample output
+    float[] outFloat; // sample output, used instead of out if not null
+    int out_begin;
     int out_pos;
 
     // 0: >>1  1: <<0  2: <<1 ... 12: <<11  13-15: >>4 <<11
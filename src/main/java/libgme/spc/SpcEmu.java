@@ -19,10 +19,16 @@
 package libgme.spc;
 
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+
+import libgme.util.Resampler;
+import libgme.util.States;
 
 
 /**
  * Nintendo SPC music file player
+ * <p>
+ * The DSP runs at 32000 Hz, output at other sample rates is resampled in the same pass.
  *
  * @see "https://www.slack.net/~ant"
  */
@@ -81,11 +87,43 @@ public final class SpcEmu extends SpcCpu {
     final SpcDsp dsp = new SpcDsp();
     final Timer[] timers = new Timer[timerCount];
 
+    /** native sample rate of the DSP */
+    static final int dspRate = 32000;
+
+    final Resampler resampler = new Resampler(dspRate, dspRate);
+
     public static final String MAGIC = "SNES-SPC700 Sound File Data";
 
     @Override
     protected int setSampleRate_(int rate) {
-        return 32000;
+        resampler.setRates(dspRate, rate);
+        return rate;
+    }
+
+    /**
+     * Sets width of the resampling filter, wider is higher quality and slower.
+     * Not used at 32000 Hz.
+     *
+     * @see Resampler#setWidth(int)
+     */
+    public void setResamplerWidth(int taps) {
+        resampler.setWidth(taps);
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        setResamplerWidth(Resampler.defaultWidth);
+    }
+
+    /** Current width of the resampling filter in taps */
+    public int resamplerWidth() {
+        return resampler.width();
+    }
+
+    /** True if output is resampled from the DSP */
+    private boolean isResampling() {
+        return resampler.outRate() != dspRate;
     }
 
     @Override
@@ -154,6 +192,7 @@ public final class SpcEmu extends SpcCpu {
 
         time = 0;
         dspTime = 32;
+        resampler.clear();
 
         // RAM
         java.util.Arrays.fill(ram, ramSize, ram.length, (byte) 0xff);
@@ -210,9 +249,80 @@ public final class SpcEmu extends SpcCpu {
     }
 
     @Override
-    protected int play_(byte[] out, int count) {
-        dsp.setOutput(out);
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.putInt(dspTime);
+        out.putInt(romEnabled);
+        out.put(ram, 0, ramSize);
+        out.put(hiRam);
+        States.putInts(out, regs);
+        States.putInts(out, regsIn);
+        for (Timer t : timers) {
+            out.putInt(t.time);
+            out.putInt(t.prescaler);
+            out.putInt(t.period);
+            out.putInt(t.divider);
+            out.putInt(t.enabled);
+            out.putInt(t.counter);
+        }
+        dsp.saveState(out);
+        if (isResampling())
+            resampler.saveState(out);
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        dspTime = in.getInt();
+        romEnabled = in.getInt();
+        in.get(ram, 0, ramSize);
+        in.get(hiRam);
+        States.getInts(in, regs);
+        States.getInts(in, regsIn);
+        for (Timer t : timers) {
+            t.time = in.getInt();
+            t.prescaler = in.getInt();
+            t.period = in.getInt();
+            t.divider = in.getInt();
+            t.enabled = in.getInt();
+            t.counter = in.getInt();
+        }
+        dsp.restoreState(in);
+        if (isResampling())
+            resampler.restoreState(in);
+    }
+
+    @Override
+    protected int play_(short[] out, int off, int count) {
+        if (isResampling())
+            return runResampler(count) ? resampler.read(out, off, count >> 1) : 0;
+        dsp.setOutput(out, off);
+        return run(count);
+    }
+
+    /** DSP output is not clamped */
+    @Override
+    protected int playFloat_(float[] out, int off, int count) {
+        if (isResampling())
+            return runResampler(count) ? resampler.read(out, off, count >> 1) : 0;
+        dsp.setOutput(out, off);
+        return run(count);
+    }
+
+    /** Runs the DSP into the resampler for count output samples, false if emulation error */
+    private boolean runResampler(int count) {
+        int frames = resampler.required(count >> 1);
+        if (frames > 0) {
+            dsp.setOutput(resampler.buffer(frames), resampler.writeOffset());
+            if (run(frames * 2) == 0)
+                return false;
+            resampler.written(frames);
+        }
+        return true;
+    }
 
+    /** Runs for count samples into the output set to the DSP */
+    private int run(int count) {
         // Run for count/2*32 clocks + extra to get DSP time half-way between samples,
         // since CPU might run for slightly less than requested
         int clockCount = count * (32 / 2) + 16 - ((time - dspTime) & 31);
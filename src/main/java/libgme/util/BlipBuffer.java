@@ -18,13 +18,19 @@
 
 package libgme.util;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 /**
  * Band-limited sound synthesis buffer
  * <p>
+ * Samples are kept in a circular buffer, reading doesn't move the rest of samples.
+ * <p>
  * system property
  * <ul>
- * <li>libgme.BlipBuffer.muchFaster ... speeds synthesis at a cost of quality. default {@code false}</li>
+ * <li>libgme.BlipBuffer.muchFaster ... speeds synthesis at a cost of quality, the default kernel width becomes 2. default {@code false}</li>
  * </ul>
  * @see "https://www.slack.net/~ant/"
  */
@@ -33,14 +39,49 @@ public final class BlipBuffer {
     /** speeds synthesis at a cost of quality */
     static final boolean muchFaster = Boolean.parseBoolean(System.getProperty("libgme.BlipBuffer.muchFaster", "false"));
 
+    /** default kernel width in taps */
+    public static final int defaultKernelWidth = muchFaster ? 2 : 16;
+
     public BlipBuffer() {
-        setVolume(1.0);
+        setKernelWidth(defaultKernelWidth);
+    }
+
+    /**
+     * Sets width of the band-limited step kernel, wider is higher quality and slower.
+     * <ul>
+     *  <li>2 ... linear interpolation, fastest</li>
+     *  <li>4 to 32, even ... windowed sinc computed at run-time, narrower ones have lower cutoff</li>
+     *  <li>16 ... the tuned kernel, default</li>
+     * </ul>
+     * Call before playing, samples already added are kept.
+     *
+     * @throws IllegalArgumentException unsupported width
+     */
+    public void setKernelWidth(int taps) {
+        if (taps != 2 && (taps < 4 || taps > maxKernelWidth || (taps & 1) != 0))
+            throw new IllegalArgumentException("kernel width: " + taps);
+
+        linear = taps == 2;
+        phaseBits = linear ? 8 : 5;
+        phaseCount = 1 << phaseBits;
+        halfWidth = taps / 2;
+        stepWidth = Math.max(taps, 2);
+        baseKernel = linear ? null : taps == 16 ? tunedKernel : baseKernels.computeIfAbsent(taps, k -> generateKernel(k / 2, phaseCount));
+        setVolume(volumeSetting);
+    }
+
+    /** Current kernel width in taps */
+    public int kernelWidth() {
+        return halfWidth * 2;
     }
 
     /** Sets sample rate of output and changes buffer length to msec */
     public void setSampleRate(int rate, int msec) {
         sampleRate = rate;
-        buf = new int[(int) ((long) msec * rate / 1000) + 1024];
+        // power of 2, so that positions wrap by mask
+        buf = new int[Integer.highestOneBit(((int) ((long) msec * rate / 1000) + 1024) * 2 - 1)];
+        mask = buf.length - 1;
+        readPos = 0;
     }
 
     /** Sets input clock rate. Must be set after sample rate. */
@@ -58,6 +99,8 @@ public final class BlipBuffer {
     public void clear() {
         offset = 0;
         accum = 0;
+        readPos = 0;
+        written = false;
         java.util.Arrays.fill(buf, 0, buf.length, 0);
     }
 
@@ -66,9 +109,10 @@ public final class BlipBuffer {
         final int shift = 15;
         final int round = 1 << (shift - 1);
 
+        volumeSetting = v;
         volume = (int) ((1 << shift) * v + 0.5) & ~1;
 
-        if (!muchFaster) {
+        if (!linear) {
             // build new set of kernels
             int[][] nk = new int[phaseCount + 1][];
             for (int i = nk.length; --i >= 0; ) {
@@ -80,13 +124,14 @@ public final class BlipBuffer {
             int mul = volume;
 
             int pc = phaseCount;
-            for (int p = 17; --p >= 0; ) {
+            int[] baseKernel = this.baseKernel;
+            for (int p = pc / 2 + 1; --p >= 0; ) {
                 int remain = mul;
-                for (int i = 8; --i >= 0; ) {
+                for (int i = halfWidth; --i >= 0; ) {
                     remain -= (nk[p][i] = (baseKernel[p * halfWidth + i] * mul + round) >> shift);
                     remain -= (nk[pc - p][i] = (baseKernel[(pc - p) * halfWidth + i] * mul + round) >> shift);
                 }
-                nk[p][7] += remain; // each pair of kernel halves must total mul
+                nk[p][halfWidth - 1] += remain; // each pair of kernel halves must total mul
             }
 
             // replace kernel atomically
@@ -94,30 +139,55 @@ public final class BlipBuffer {
         }
     }
 
+    /** While muted, deltas are ignored. Used to run emulation quickly without output */
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+        mutedDelta = false;
+    }
+
+    /** True if a delta came while muted since the last call, that is the output would have changed */
+    public boolean takeMutedDelta() {
+        boolean delta = mutedDelta;
+        mutedDelta = false;
+        return delta;
+    }
+
     public void addDeltaFast(int time, int delta) {
+        if (muted) {
+            mutedDelta |= delta != 0;
+            return;
+        }
+        written = true;
         int[] buf = this.buf;
         time = time * factor + offset;
         int phase = (time) >>
                 (timeBits - phaseBits) & (phaseCount - 1);
-        time >>= timeBits;
+        time = readPos + (time >> timeBits);
         delta *= volume;
         int right = (delta >> phaseBits) * phase;
-        buf[time] += delta - right;
-        buf[time + 1] += right;
+        buf[time & mask] += delta - right;
+        buf[(time + 1) & mask] += right;
     }
 
     /** Adds delta at given time */
     public void addDelta(int time, int delta) {
+        if (muted) {
+            mutedDelta |= delta != 0;
+            return;
+        }
+        written = true;
         int[] buf = this.buf;
         time = time * factor + offset;
         int phase = (time) >>
                 (timeBits - phaseBits) & (phaseCount - 1);
-        time >>= timeBits;
-        if (muchFaster) {
+        time = readPos + (time >> timeBits);
+        if (linear) {
             delta *= volume;
             int right = (delta >> phaseBits) * phase;
-            buf[time] += delta - right;
-            buf[time + 1] += right;
+            buf[time & mask] += delta - right;
+            buf[(time + 1) & mask] += right;
+        } else if (halfWidth != 8 || time > buf.length - stepWidth) {
+            addDeltaAny(time, phase, delta);
         } else {
             // TODO: use smaller kernel
 
@@ -146,6 +216,24 @@ public final class BlipBuffer {
         }
     }
 
+    /** addDelta() for any kernel width or a step crossing the end of the buffer */
+    private void addDeltaAny(int time, int phase, int delta) {
+        int[] k = kernel[phase];
+        for (int i = 0; i < halfWidth; i++) {
+            buf[(time + i) & mask] += k[i] * delta;
+        }
+        k = kernel[phaseCount - phase];
+        time += halfWidth;
+        for (int i = 0; i < halfWidth; i++) {
+            buf[(time + i) & mask] += k[halfWidth - 1 - i] * delta;
+        }
+    }
+
+    /** True if any delta is added since clear(), otherwise all samples are 0 */
+    public boolean isWritten() {
+        return written;
+    }
+
     /** Number of samples that would be available at time */
     public int countSamples(int time) {
         int last_sample = (time * factor + offset) >> timeBits;
@@ -156,7 +244,7 @@ public final class BlipBuffer {
     /** Ends current time frame and makes samples available for reading */
     public void endFrame(int time) {
         offset += time * factor;
-        assert samplesAvail() < buf.length;
+        assert samplesAvail() + stepWidth <= buf.length;
     }
 
     /** Number of samples available to be read */
@@ -176,11 +264,13 @@ public final class BlipBuffer {
         if (count > 0) {
             // Integrate
             int[] buf = this.buf;
+            int mask = this.mask;
             int accum = this.accum;
             pos <<= 1;
-            int i = 0;
+            int i = readPos;
+            int end = i + count;
             do {
-                accum += buf[i] - (accum >> 9);
+                accum += buf[i & mask] - (accum >> 9);
                 int s = accum >> 15;
 
                 // clamp to 16 bits
@@ -192,7 +282,37 @@ public final class BlipBuffer {
                 out[pos + 1] = (byte) s;
                 pos += 2;
             }
-            while (++i < count);
+            while (++i < end);
+            this.accum = accum;
+
+            removeSamples(count);
+        }
+        return count;
+    }
+
+    public int readSamples(short[] out, int pos, int count) {
+        int avail = samplesAvail();
+        if (count > avail)
+            count = avail;
+
+        if (count > 0) {
+            // Integrate
+            int[] buf = this.buf;
+            int mask = this.mask;
+            int accum = this.accum;
+            int i = readPos;
+            int end = i + count;
+            do {
+                accum += buf[i & mask] - (accum >> 9);
+                int s = accum >> 15;
+
+                // clamp to 16 bits
+                if ((short) s != s)
+                    s = (s >> 24) ^ 0x7FFF;
+
+                out[pos++] = (short) s;
+            }
+            while (++i < end);
             this.accum = accum;
 
             removeSamples(count);
@@ -208,11 +328,13 @@ public final class BlipBuffer {
         if (count > 0) {
             // Integrate
             int[] buf = this.buf;
+            int mask = this.mask;
             int accum = this.accum;
             pos <<= 1;
-            int i = 0;
+            int i = readPos;
+            int end = i + count;
             do {
-                accum += buf[i] - (accum >> 9);
+                accum += buf[i & mask] - (accum >> 9);
                 int s = accum >> 15;
                 byte val = (byte) s;
                 if (val != s) {
@@ -221,7 +343,7 @@ public final class BlipBuffer {
                 }
                 out[pos++] = val;
             }
-            while (++i < count);
+            while (++i < end);
             this.accum = accum;
 
             removeSamples(count);
@@ -229,37 +351,129 @@ public final class BlipBuffer {
         return count;
     }
 
+    /** Writes samples not read yet and the integrator, call between frames */
+    public void saveState(ByteBuffer out) {
+        out.putInt(offset);
+        out.putInt(accum);
+        int length = Math.min(samplesAvail() + stepWidth, buf.length);
+        out.putInt(length);
+        // from the read position, as if the buffer is not circular
+        int first = Math.min(length, buf.length - readPos);
+        States.putInts(out, buf, readPos, first);
+        States.putInts(out, buf, 0, length - first);
+    }
+
+    /** Sample rate and clock rate must be the same as when saved */
+    public void restoreState(ByteBuffer in) {
+        offset = in.getInt();
+        accum = in.getInt();
+        int length = in.getInt();
+        readPos = 0;
+        States.getInts(in, buf, 0, length);
+        java.util.Arrays.fill(buf, length, buf.length, 0);
+        written = accum != 0;
+        for (int i = 0; i < length && !written; i++) {
+            written = buf[i] != 0;
+        }
+    }
+
 // internal
 
     static final int timeBits = 16;
-    static final int phaseBits = (muchFaster ? 8 : 5);
-    static final int phaseCount = 1 << phaseBits;
-    static final int halfWidth = 8;
-    static final int stepWidth = halfWidth * 2;
+    static final int maxKernelWidth = 32;
+
+    /** true: linear interpolation instead of kernel */
+    boolean linear;
+    int phaseBits;
+    int phaseCount;
+    int halfWidth;
+    /** samples a step spans */
+    int stepWidth;
+    /** unscaled kernel, {@link #tunedKernel} layout */
+    int[] baseKernel;
+    double volumeSetting = 1.0;
 
     int factor;
     int offset;
     int[][] kernel;
     int accum;
+    /** circular, length is power of 2 */
     int[] buf;
+    int mask;
+    /** position of the first sample not read yet */
+    int readPos;
     int sampleRate;
     int clockRate;
     int volume;
+    boolean muted;
+    boolean mutedDelta;
+    boolean written;
 
     void removeSilence(int count) {
         offset -= count << timeBits;
         assert samplesAvail() >= 0;
     }
 
+    /** Clears read samples for reuse, cost is proportional to count */
     void removeSamples(int count) {
-        int remain = samplesAvail() - count + stepWidth;
-        System.arraycopy(buf, count, buf, 0, remain);
-        java.util.Arrays.fill(buf, remain, remain + count, 0);
+        int end = readPos + count;
+        if (!written) {
+            // all 0 already
+        } else if (end <= buf.length) {
+            java.util.Arrays.fill(buf, readPos, end, 0);
+        } else {
+            java.util.Arrays.fill(buf, readPos, buf.length, 0);
+            java.util.Arrays.fill(buf, 0, end - buf.length, 0);
+        }
+        readPos = end & mask;
         removeSilence(count);
     }
 
-    // TODO: compute at run-time
-    static final int[] baseKernel = {
+    /** kernels computed by taps */
+    private static final Map<Integer, int[]> baseKernels = new ConcurrentHashMap<>();
+
+    /**
+     * Computes a Hamming windowed sinc kernel integrated over each sample, for phaseCount + 1 phases.
+     * Row p is the left half of the step at halfWidth - 1 + p / phaseCount, the right half is
+     * row phaseCount - p mirrored, each pair of halves totals 1 &lt;&lt; 15.
+     * Narrower kernels get lower cutoff for their wider transition band.
+     */
+    static int[] generateKernel(int halfWidth, int phaseCount) {
+        double cutoff = Math.min(1 / (4.5 / (halfWidth * 2 - 1) + 0.85), 0.999);
+        final int res = 16; // integration steps per sample
+
+        double[] k = new double[(phaseCount + 1) * halfWidth];
+        for (int p = 0; p <= phaseCount; p++) {
+            double center = halfWidth - 1 + (double) p / phaseCount;
+            for (int i = 0; i < halfWidth; i++) {
+                double sum = 0;
+                for (int j = 0; j < res; j++) {
+                    double t = i - center - 0.5 + (j + 0.5) / res;
+                    if (Math.abs(t) < halfWidth) {
+                        double x = Math.PI * cutoff * t;
+                        double sinc = x == 0 ? 1 : Math.sin(x) / x;
+                        sum += cutoff * sinc * (0.54 + 0.46 * Math.cos(Math.PI * t / halfWidth));
+                    }
+                }
+                k[p * halfWidth + i] = sum / res;
+            }
+        }
+
+        int[] kernel = new int[k.length];
+        for (int p = 0; p <= phaseCount; p++) {
+            double total = 0;
+            for (int i = 0; i < halfWidth; i++) {
+                total += k[p * halfWidth + i] + k[(phaseCount - p) * halfWidth + i];
+            }
+            for (int i = 0; i < halfWidth; i++) {
+                kernel[p * halfWidth + i] = (int) Math.round(k[p * halfWidth + i] * (1 << 15) / total);
+            }
+        }
+        return kernel;
+    }
+
+    /** 16 taps, 32 phases */
+    static final int[] tunedKernel = {
             10, -61, 284, -615, 1359, -1753, 5911, 22498,
             14, -71, 295, -616, 1314, -1615, 5259, 22472,
             17, -80, 304, -611, 1260, -1468, 4626, 22402,
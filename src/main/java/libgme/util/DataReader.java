@@ -23,6 +23,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -55,22 +59,25 @@ public class DataReader {
         return out;
     }
 
-    /** Loads entire stream into byte array, then closes stream */
+    /** Loads entire stream into byte array of its exact size, then closes stream */
     public static byte[] loadData(InputStream in) throws IOException {
-        byte[] data = new byte[256 * 1024];
-        int size = 0;
-        int count;
-        while ((count = in.read(data, size, data.length - size)) != -1) {
-            size += count;
-            if (size >= data.length)
-                data = resize(data, data.length * 2);
+        try (in) {
+            return in.readAllBytes();
         }
-        in.close();
-
-        if (data.length - size > data.length / 4)
-            data = resize(data, size);
+    }
 
-        return data;
+    /**
+     * Maps entire file into memory read only, instead of loading it.
+     * Pages are read on demand and shared with other processes mapping the same file.
+     *
+     * @throws IOException the file is larger than 2GB
+     */
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("too large: " + path);
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 
     /** Loads stream into ByteArrayInputStream */
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.util;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Sample loops without dependency between iterations, so that SIMD can run them.
+ * <p>
+ * {@link #instance} is the Vector API implementation when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, otherwise this scalar one.
+ * Both give exactly the same results.
+ * <p>
+ * system properties
+ * <ul>
+ *  <li>libgme.simd ... use the Vector API if available, default {@code true}</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public class Kernels {
+
+    private static final Logger logger = getLogger(Kernels.class.getName());
+
+    /** always available */
+    public static final Kernels scalar = new Kernels();
+
+    /** the fastest available */
+    public static final Kernels instance = create();
+
+    protected Kernels() {
+    }
+
+    /** the vector one is loaded by name, its class must not be linked without the module */
+    private static Kernels create() {
+        if (!Boolean.parseBoolean(System.getProperty("libgme.simd", "true")) ||
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return scalar;
+        }
+        try {
+            Kernels kernels = (Kernels) Class.forName(Kernels.class.getPackageName() + ".VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+logger.log(Level.DEBUG, "kernels: " + kernels);
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+logger.log(Level.DEBUG, "vector kernels are not available: " + e);
+            return scalar;
+        }
+    }
+
+    /**
+     * Mixes in[inOff..] into out[outOff..] attenuated by 4, clamping to 16 bits.
+     * out[i] = clamp((out[i] &gt;&gt; 2) + in[i])
+     */
+    public void mixQuarter(short[] out, int outOff, int[] in, int inOff, int count) {
+        for (int i = 0; i < count; i++) {
+            int s = (out[outOff + i] >> 2) + in[inOff + i];
+            if ((short) s != s)
+                s = (s >> 31) ^ 0x7fff;
+            out[outOff + i] = (short) s;
+        }
+    }
+
+    /**
+     * Float version of {@link #mixQuarter(short[], int, int[], int, int)} without clamping.
+     * out[i] = out[i] * 0.25 + in[i] * scale
+     */
+    public void mixQuarter(float[] out, int outOff, int[] in, int inOff, int count, float scale) {
+        for (int i = 0; i < count; i++) {
+            out[outOff + i] = out[outOff + i] * 0.25f + in[inOff + i] * scale;
+        }
+    }
+
+    /**
+     * 8 tap FIR filter of interleaved stereo history.
+     *
+     * @param hist left and right pairs, 16 values from pos, oldest first
+     * @param taps 16 coefficients, each one is repeated for left and right
+     * @return left in upper 32 bits, right in lower 32 bits
+     */
+    public long fir8(int[] hist, int pos, int[] taps) {
+        int l = 0;
+        int r = 0;
+        for (int i = 0; i < 16; i += 2) {
+            l += taps[i] * hist[pos + i];
+            r += taps[i + 1] * hist[pos + i + 1];
+        }
+        return (long) l << 32 | (r & 0xffff_ffffL);
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
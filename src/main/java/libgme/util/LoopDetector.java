@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Finds a loop by memory of a player repeating.
+ * <p>
+ * A driver called periodically keeps all of its state in memory,
+ * once the memory at a call is the same as at an earlier call, the music
+ * plays the same from there. Memory is compared by 64 bit hashes.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class LoopDetector {
+
+    /** hash of memory to the call it was seen */
+    private final Map<Long, Integer> calls = new HashMap<>();
+
+    private final int maxCalls;
+
+    private int call;
+
+    /** @param maxCalls calls to be examined, memory use is bounded by this */
+    public LoopDetector(int maxCalls) {
+        this.maxCalls = maxCalls;
+    }
+
+    public void reset() {
+        calls.clear();
+        call = 0;
+    }
+
+    /**
+     * Examines the memory at a call.
+     *
+     * @return loop length in calls, 0 if not found yet
+     */
+    public int update(byte[] mem, int offset, int length) {
+        if (call >= maxCalls)
+            return 0;
+
+        Integer first = calls.putIfAbsent(hash(mem, offset, length), call);
+        call++;
+        return first == null ? 0 : call - 1 - first;
+    }
+
+    /** FNV-1a */
+    static long hash(byte[] mem, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= mem[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -18,6 +18,9 @@
 
 package libgme.util;
 
+import java.nio.ByteBuffer;
+
+
 /**
  * Manages memory paging used by CPU emulators
  *
@@ -32,15 +35,20 @@ public final class MemPager {
 
     /** Loads data and returns memory array */
     public byte[] load(byte[] in, byte[] header, int addr, int fill) {
+        return load(ByteBuffer.wrap(in), header, addr, fill);
+    }
+
+    /** Loads data from 0 to limit of in and returns memory array, in is copied only once */
+    public byte[] load(ByteBuffer in, byte[] header, int addr, int fill) {
         // allocate
-        int romLength = in.length - header.length;
+        int romLength = in.limit() - header.length;
         int romSize = (romLength + addr + pageSize - 1) / pageSize * pageSize;
         data = new byte[romOffset + romSize + padding];
 
         // copy data
         java.util.Arrays.fill(data, 0, romOffset + addr, (byte) fill);
         java.util.Arrays.fill(data, data.length - pageSize - padding, data.length, (byte) fill);
-        System.arraycopy(in, header.length, data, romOffset + addr, romLength);
+        in.get(header.length, data, romOffset + addr, romLength);
 
         // addrMask
         int shift = 0;
@@ -51,7 +59,7 @@ public final class MemPager {
         addrMask = (1 << shift) - 1;
 
         // copy header
-        System.arraycopy(in, 0, header, 0, header.length);
+        in.get(0, header, 0, header.length);
         return data;
     }
 
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.util;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Band-limited polyphase resampler of stereo float samples, for emulators
+ * which generate samples at a fixed rate.
+ * <p>
+ * The ratio of rates is kept exactly as a fraction, so there is no drift.
+ * Filters for common ratios (e.g. 32000 to 44100 or 48000) have a phase for
+ * every output position, the others use the nearest of {@link #maxPhases} phases.
+ * <pre>
+ *  int n = resampler.required(frames);
+ *  float[] in = resampler.buffer(n);
+ *  // write n stereo frames into in from resampler.writeOffset()
+ *  resampler.written(n);
+ *  resampler.read(out, off, frames);
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class Resampler {
+
+    /** default filter width in taps */
+    public static final int defaultWidth = 16;
+
+    /** phases of a filter when the ratio needs more */
+    static final int maxPhases = 512;
+
+    static final int maxWidth = 32;
+
+    /** about 80dB stop band */
+    static final double kaiserBeta = 8;
+
+    /** filters by width, input rate, output rate */
+    private static final Map<Long, float[]> filters = new ConcurrentHashMap<>();
+
+    private int width;
+    private int inRate;
+    private int outRate;
+
+    /** output step in input frames is m / l */
+    private int l;
+    private int m;
+
+    /** filter phases, the phase for fraction f is f * phases / l */
+    private int phases;
+
+    /** (phases + 1) * width coefficients */
+    private float[] filter;
+
+    /** interleaved stereo input, the first taps of the next output is at pos */
+    private float[] buf = new float[0];
+    private int pos;
+    private int frac;
+    private int avail;
+
+    public Resampler(int inRate, int outRate) {
+        this.inRate = inRate;
+        this.outRate = outRate;
+        setWidth(defaultWidth);
+    }
+
+    /**
+     * Sets width of the filter, wider is higher quality and slower.
+     * <ul>
+     *  <li>2 ... linear interpolation, fastest</li>
+     *  <li>4 to 32, even ... windowed sinc, narrower ones have lower cutoff</li>
+     *  <li>16 ... default</li>
+     * </ul>
+     * Clears the input.
+     *
+     * @throws IllegalArgumentException unsupported width
+     */
+    public void setWidth(int taps) {
+        if (taps != 2 && (taps < 4 || taps > maxWidth || (taps & 1) != 0))
+            throw new IllegalArgumentException("width: " + taps);
+        width = taps;
+        setRates(inRate, outRate);
+    }
+
+    /** Current filter width in taps */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Sets sample rates, clears the input.
+     *
+     * @throws IllegalArgumentException a rate is not positive
+     */
+    public void setRates(int inRate, int outRate) {
+        if (inRate <= 0 || outRate <= 0)
+            throw new IllegalArgumentException("rates: " + inRate + ", " + outRate);
+        this.inRate = inRate;
+        this.outRate = outRate;
+        int gcd = gcd(inRate, outRate);
+        l = outRate / gcd;
+        m = inRate / gcd;
+        phases = Math.min(l, maxPhases);
+        filter = filters.computeIfAbsent((long) width << 48 | (long) inRate << 24 | outRate,
+                k -> generateFilter(width, phases, Math.min(1.0, (double) outRate / inRate)));
+        clear();
+    }
+
+    public int inRate() {
+        return inRate;
+    }
+
+    public int outRate() {
+        return outRate;
+    }
+
+    /** Removes all input, the next output starts at the next input without delay */
+    public void clear() {
+        pos = 0;
+        frac = 0;
+        // history before the first input is silence
+        avail = width / 2 - 1;
+        if (buf.length < avail * 2)
+            buf = new float[avail * 2];
+        java.util.Arrays.fill(buf, 0, avail * 2, 0);
+    }
+
+    /** Number of input frames to write before reading frames of output */
+    public int required(int frames) {
+        if (frames <= 0)
+            return 0;
+        long last = pos + ((long) frac + (long) (frames - 1) * m) / l;
+        return (int) Math.max(0, last + width - avail);
+    }
+
+    /** Makes room to write frames of input, and returns the buffer, see {@link #writeOffset()} */
+    public float[] buffer(int frames) {
+        int size = (avail + frames) * 2;
+        if (buf.length < size)
+            buf = java.util.Arrays.copyOf(buf, Math.max(size, buf.length * 3 / 2));
+        return buf;
+    }
+
+    /** Index in {@link #buffer(int)} to write input at */
+    public int writeOffset() {
+        return avail * 2;
+    }
+
+    /** Commits frames of input written into {@link #buffer(int)} */
+    public void written(int frames) {
+        avail += frames;
+    }
+
+    /**
+     * Generates frames of 16 bit stereo output, 1.0 of input is the full scale.
+     * {@link #required(int)} input must be written before.
+     *
+     * @return number of samples written
+     */
+    public int read(short[] out, int off, int frames) {
+        float[] buf = this.buf;
+        float[] filter = this.filter;
+        int width = this.width;
+        for (int i = 0; i < frames; i++) {
+            int c = phase() * width;
+            int b = pos * 2;
+            float left = 0;
+            float right = 0;
+            for (int k = 0; k < width; k++) {
+                float h = filter[c + k];
+                left += h * buf[b + k * 2];
+                right += h * buf[b + k * 2 + 1];
+            }
+            out[off + i * 2] = clamp(left);
+            out[off + i * 2 + 1] = clamp(right);
+            step();
+        }
+        remove();
+        return frames * 2;
+    }
+
+    /**
+     * Generates frames of float stereo output without clamping.
+     * {@link #required(int)} input must be written before.
+     *
+     * @return number of samples written
+     */
+    public int read(float[] out, int off, int frames) {
+        float[] buf = this.buf;
+        float[] filter = this.filter;
+        int width = this.width;
+        for (int i = 0; i < frames; i++) {
+            int c = phase() * width;
+            int b = pos * 2;
+            float left = 0;
+            float right = 0;
+            for (int k = 0; k < width; k++) {
+                float h = filter[c + k];
+                left += h * buf[b + k * 2];
+                right += h * buf[b + k * 2 + 1];
+            }
+            out[off + i * 2] = left;
+            out[off + i * 2 + 1] = right;
+            step();
+        }
+        remove();
+        return frames * 2;
+    }
+
+    /** Same rates and width as when saved */
+    public void saveState(ByteBuffer out) {
+        out.putInt(pos);
+        out.putInt(frac);
+        out.putInt(avail);
+        States.putFloats(out, buf, 0, avail * 2);
+    }
+
+    /** Same rates and width as when saved */
+    public void restoreState(ByteBuffer in) {
+        pos = in.getInt();
+        frac = in.getInt();
+        int avail = in.getInt();
+        buffer(avail - this.avail);
+        this.avail = avail;
+        States.getFloats(in, buf, 0, avail * 2);
+    }
+
+    private int phase() {
+        return phases == l ? frac : (int) (((long) frac * phases + (l >> 1)) / l);
+    }
+
+    private void step() {
+        int f = frac + m;
+        pos += f / l;
+        frac = f % l;
+    }
+
+    /** Removes input which is not needed anymore */
+    private void remove() {
+        int n = Math.min(pos, avail);
+        if (n > 0) {
+            System.arraycopy(buf, n * 2, buf, 0, (avail - n) * 2);
+            avail -= n;
+            pos -= n;
+        }
+    }
+
+    private static short clamp(float s) {
+        int i = Math.round(s * 0x8000);
+        if ((short) i != i)
+            i = (i >> 31) ^ 0x7fff;
+        return (short) i;
+    }
+
+    /** kaiser window, much less ripple than the hamming one of BlipBuffer */
+    private static double kaiser(double x) {
+        return i0(kaiserBeta * Math.sqrt(1 - x * x)) / i0(kaiserBeta);
+    }
+
+    /** modified bessel function of the first kind, order 0 */
+    private static double i0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 32; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Generates phases + 1 filters of width taps, normalized to unity gain.
+     * Phase p is for the output at p / phases after the center of the taps.
+     *
+     * @param scale cutoff relative to the input nyquist frequency, less than 1 when down sampling
+     */
+    static float[] generateFilter(int width, int phases, double scale) {
+        int halfWidth = width / 2;
+        // same as BlipBuffer, wider is closer to the nyquist frequency
+        double cutoff = Math.min(1 / (4.5 / (width - 1) + 0.85), 0.999) * scale;
+
+        float[] filter = new float[(phases + 1) * width];
+        for (int p = 0; p <= phases; p++) {
+            double center = halfWidth - 1 + (double) p / phases;
+            double[] k = new double[width];
+            double total = 0;
+            for (int i = 0; i < width; i++) {
+                double t = i - center;
+                if (width == 2) {
+                    k[i] = 1 - Math.abs(t);
+                } else {
+                    double x = Math.PI * cutoff * t;
+                    double sinc = x == 0 ? 1 : Math.sin(x) / x;
+                    k[i] = Math.abs(t) < halfWidth ? sinc * kaiser(t / halfWidth) : 0;
+                }
+                total += k[i];
+            }
+            for (int i = 0; i < width; i++) {
+                filter[p * width + i] = (float) (k[i] / total);
+            }
+        }
+        return filter;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.util;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Helpers to write/read emulator state.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class States {
+
+    private States() {
+    }
+
+    public static void putInts(ByteBuffer out, int[] a) {
+        putInts(out, a, 0, a.length);
+    }
+
+    public static void putInts(ByteBuffer out, int[] a, int off, int len) {
+        out.asIntBuffer().put(a, off, len);
+        out.position(out.position() + len * Integer.BYTES);
+    }
+
+    public static void getInts(ByteBuffer in, int[] a) {
+        getInts(in, a, 0, a.length);
+    }
+
+    public static void getInts(ByteBuffer in, int[] a, int off, int len) {
+        in.asIntBuffer().get(a, off, len);
+        in.position(in.position() + len * Integer.BYTES);
+    }
+
+    public static void putFloats(ByteBuffer out, float[] a, int off, int len) {
+        out.asFloatBuffer().put(a, off, len);
+        out.position(out.position() + len * Float.BYTES);
+    }
+
+    public static void getFloats(ByteBuffer in, float[] a, int off, int len) {
+        in.asFloatBuffer().get(a, off, len);
+        in.position(in.position() + len * Float.BYTES);
+    }
+
+    public static void putBooleans(ByteBuffer out, boolean[] a) {
+        for (boolean b : a) {
+            putBoolean(out, b);
+        }
+    }
+
+    public static void getBooleans(ByteBuffer in, boolean[] a) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] = getBoolean(in);
+        }
+    }
+
+    public static void putBoolean(ByteBuffer out, boolean b) {
+        out.put((byte) (b ? 1 : 0));
+    }
+
+    public static boolean getBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+}
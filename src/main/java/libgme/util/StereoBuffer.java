@@ -18,12 +18,14 @@
 
 package libgme.util;
 
+import java.nio.ByteBuffer;
+
 
 public final class StereoBuffer {
 
     /** for debug */
     public interface Observer {
-        void observe(byte[] out, int start, int end);
+        void observe(short[] out, int start, int end);
     }
 
     private final BlipBuffer[] bufs = new BlipBuffer[3];
@@ -91,6 +93,43 @@ public final class StereoBuffer {
         return bufs[1];
     }
 
+    public void setKernelWidth(int taps) {
+        for (int i = bufs.length; --i >= 0; ) {
+            bufs[i].setKernelWidth(taps);
+        }
+    }
+
+    public int kernelWidth() {
+        return bufs[0].kernelWidth();
+    }
+
+    public void setMuted(boolean muted) {
+        for (int i = bufs.length; --i >= 0; ) {
+            bufs[i].setMuted(muted);
+        }
+    }
+
+    /** True if a delta came to any channel while muted since the last call */
+    public boolean takeMutedDelta() {
+        boolean delta = false;
+        for (int i = bufs.length; --i >= 0; ) {
+            delta |= bufs[i].takeMutedDelta();
+        }
+        return delta;
+    }
+
+    public void saveState(ByteBuffer out) {
+        for (BlipBuffer buf : bufs) {
+            buf.saveState(out);
+        }
+    }
+
+    public void restoreState(ByteBuffer in) {
+        for (BlipBuffer buf : bufs) {
+            buf.restoreState(in);
+        }
+    }
+
     public void endFrame(int time) {
         for (int i = bufs.length; --i >= 0; ) {
             bufs[i].endFrame(time);
@@ -101,8 +140,29 @@ public final class StereoBuffer {
         return bufs[2].samplesAvail() << 1;
     }
 
+    /** Discards at most count samples without reading, count must be a multiple of 2 */
+    public int removeSamples(int count) {
+        assert (count & 1) == 0;
+
+        int avail = samplesAvail();
+        if (count > avail)
+            count = avail;
+
+        if ((count >>= 1) > 0) {
+            for (int i = bufs.length; --i >= 0; ) {
+                bufs[i].removeSamples(count);
+            }
+        }
+        return count << 1;
+    }
+
+    /** True if only center channel is written, left and right are silent */
+    public boolean isMono() {
+        return !bufs[0].written && !bufs[1].written;
+    }
+
     /** Output is in stereo, so count must always be a multiple of 2 */
-    public int readSamples(byte[] out, int start, int count) {
+    public int readSamples(short[] out, int start, int count) {
         assert (count & 1) == 0;
 
         int avail = samplesAvail();
@@ -110,49 +170,203 @@ public final class StereoBuffer {
             count = avail;
 
         if ((count >>= 1) > 0) {
-            // TODO: optimize for mono case
+            int pos;
+            if (isMono()) {
+                pos = readMono(out, start, count);
+            } else {
+                pos = readStereo(out, start, count);
+            }
+            if (observer != null)
+                observer.observe(out, start, pos);
+            for (int i = bufs.length; --i >= 0; ) {
+                bufs[i].removeSamples(count);
+            }
+        }
+        return count << 1;
+    }
 
-            // calculate center in place
-            int[] mono = bufs[2].buf;
-            {
-                int accum = bufs[2].accum;
-                int i = 0;
+    /**
+     * Reads in 32 bit float without clamping, 1.0 is the full scale of 16 bit output.
+     * The observer is not called.
+     *
+     * @param count must be a multiple of 2 as well
+     */
+    public int readSamples(float[] out, int start, int count) {
+        assert (count & 1) == 0;
+
+        int avail = samplesAvail();
+        if (count > avail)
+            count = avail;
+
+        if ((count >>= 1) > 0) {
+            BlipBuffer center = bufs[2];
+            int[] mono = center.buf;
+            int monoMask = center.mask;
+            int monoPos = center.readPos;
+            int accumC = center.accum;
+            int pos = start;
+            int i = 0;
+            if (isMono()) {
                 do {
-                    mono[i] = (accum += mono[i] - (accum >> 9));
+                    float s = (accumC += mono[(monoPos + i) & monoMask] - (accumC >> 9)) * floatScale;
+                    out[pos] = s;
+                    out[pos + 1] = s;
+                    pos += 2;
                 }
                 while (++i < count);
-                bufs[2].accum = accum;
+            } else {
+                int[] left = bufs[0].buf;
+                int leftMask = bufs[0].mask;
+                int leftPos = bufs[0].readPos;
+                int[] right = bufs[1].buf;
+                int rightMask = bufs[1].mask;
+                int rightPos = bufs[1].readPos;
+                int accumL = bufs[0].accum;
+                int accumR = bufs[1].accum;
+                do {
+                    accumC += mono[(monoPos + i) & monoMask] - (accumC >> 9);
+                    accumL += left[(leftPos + i) & leftMask] - (accumL >> 9);
+                    accumR += right[(rightPos + i) & rightMask] - (accumR >> 9);
+                    out[pos] = ((float) accumL + accumC) * floatScale;
+                    out[pos + 1] = ((float) accumR + accumC) * floatScale;
+                    pos += 2;
+                }
+                while (++i < count);
+                bufs[0].accum = accumL;
+                bufs[1].accum = accumR;
+            }
+            center.accum = accumC;
+            for (int c = bufs.length; --c >= 0; ) {
+                bufs[c].removeSamples(count);
             }
+        }
+        return count << 1;
+    }
 
-            int pos = 0;
-            // calculate left and right
-            for (int ch = 2; --ch >= 0; ) {
-                // add right and output
-                int[] buf = bufs[ch].buf;
-                int accum = bufs[ch].accum;
-                pos = (start + ch) << 1;
+    /** integrator to float, 16 bit sample is integrator &gt;&gt; 15 */
+    private static final float floatScale = 1f / (1 << 30);
+
+    /**
+     * Reads in mono, left and right are mixed down.
+     * The observer is not called.
+     *
+     * @param count in samples, not like stereo one
+     */
+    public int readSamplesMono(short[] out, int start, int count) {
+        int avail = samplesAvail() >> 1;
+        if (count > avail)
+            count = avail;
+
+        if (count > 0) {
+            BlipBuffer center = bufs[2];
+            if (isMono()) {
+                center.readSamples(out, start, count);
+                bufs[0].removeSamples(count);
+                bufs[1].removeSamples(count);
+            } else {
+                int[] mono = center.buf;
+                int monoMask = center.mask;
+                int monoPos = center.readPos;
+                int[] left = bufs[0].buf;
+                int leftMask = bufs[0].mask;
+                int leftPos = bufs[0].readPos;
+                int[] right = bufs[1].buf;
+                int rightMask = bufs[1].mask;
+                int rightPos = bufs[1].readPos;
+                int accumC = center.accum;
+                int accumL = bufs[0].accum;
+                int accumR = bufs[1].accum;
+                int pos = start;
                 int i = 0;
                 do {
-                    int s = ((accum += buf[i] - (accum >> 9)) + mono[i]) >> 15;
+                    accumC += mono[(monoPos + i) & monoMask] - (accumC >> 9);
+                    accumL += left[(leftPos + i) & leftMask] - (accumL >> 9);
+                    accumR += right[(rightPos + i) & rightMask] - (accumR >> 9);
+                    int s = (((accumL + accumR) >> 1) + accumC) >> 15;
 
                     // clamp to 16 bits
                     if ((short) s != s)
                         s = (s >> 24) ^ 0x7fff;
 
-                    // write as big endian
-                    out[pos] = (byte) (s >> 8);
-                    out[pos + 1] = (byte) s;
-                    pos += 4;
+                    out[pos++] = (short) s;
                 }
                 while (++i < count);
-                bufs[ch].accum = accum;
+                center.accum = accumC;
+                bufs[0].accum = accumL;
+                bufs[1].accum = accumR;
+                for (int c = bufs.length; --c >= 0; ) {
+                    bufs[c].removeSamples(count);
+                }
             }
-            if (observer != null)
-                observer.observe(out, start * 2, pos);
-            for (int i = bufs.length; --i >= 0; ) {
-                bufs[i].removeSamples(count);
+        }
+        return count;
+    }
+
+    /** Integrates center once and writes it to both sides */
+    private int readMono(short[] out, int start, int count) {
+        BlipBuffer center = bufs[2];
+        int[] mono = center.buf;
+        int mask = center.mask;
+        int readPos = center.readPos;
+        int accum = center.accum;
+        int pos = start;
+        int i = 0;
+        do {
+            int s = (accum += mono[(readPos + i) & mask] - (accum >> 9)) >> 15;
+
+            // clamp to 16 bits
+            if ((short) s != s)
+                s = (s >> 24) ^ 0x7fff;
+
+            out[pos] = (short) s;
+            out[pos + 1] = (short) s;
+            pos += 2;
+        }
+        while (++i < count);
+        center.accum = accum;
+        return pos;
+    }
+
+    private int readStereo(short[] out, int start, int count) {
+        // calculate center in place
+        BlipBuffer center = bufs[2];
+        int[] mono = center.buf;
+        int monoMask = center.mask;
+        int monoPos = center.readPos;
+        {
+            int accum = center.accum;
+            int i = 0;
+            do {
+                int j = (monoPos + i) & monoMask;
+                mono[j] = (accum += mono[j] - (accum >> 9));
             }
+            while (++i < count);
+            center.accum = accum;
         }
-        return count << 1;
+
+        int pos = 0;
+        // calculate left and right
+        for (int ch = 2; --ch >= 0; ) {
+            // add right and output
+            int[] buf = bufs[ch].buf;
+            int mask = bufs[ch].mask;
+            int readPos = bufs[ch].readPos;
+            int accum = bufs[ch].accum;
+            pos = start + ch;
+            int i = 0;
+            do {
+                int s = ((accum += buf[(readPos + i) & mask] - (accum >> 9)) + mono[(monoPos + i) & monoMask]) >> 15;
+
+                // clamp to 16 bits
+                if ((short) s != s)
+                    s = (s >> 24) ^ 0x7fff;
+
+                out[pos] = (short) s;
+                pos += 2;
+            }
+            while (++i < count);
+            bufs[ch].accum = accum;
+        }
+        return pos;
     }
 }
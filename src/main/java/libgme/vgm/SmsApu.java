@@ -20,6 +20,7 @@ package libgme.vgm;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 
 import libgme.util.BlipBuffer;
 
@@ -107,6 +108,26 @@ public final class SmsApu {
         reset(0x0009, 16);
     }
 
+    public void saveState(ByteBuffer out) {
+        out.putInt(lastTime);
+        out.putInt(latch);
+        out.putInt(noiseFeedback);
+        out.putInt(loopedFeedback);
+        for (SmsOsc osc : oscs) {
+            osc.saveState(out);
+        }
+    }
+
+    public void restoreState(ByteBuffer in) {
+        lastTime = in.getInt();
+        latch = in.getInt();
+        noiseFeedback = in.getInt();
+        loopedFeedback = in.getInt();
+        for (SmsOsc osc : oscs) {
+            osc.restoreState(in);
+        }
+    }
+
     public void writeGG(int time, int data) {
         runUntil(time);
 
@@ -18,6 +18,8 @@
 
 package libgme.vgm;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -35,6 +37,22 @@ public final class SmsNoise extends SmsOsc {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(shifter);
+        out.putInt(feedback);
+        out.putInt(select);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        shifter = in.getInt();
+        feedback = in.getInt();
+        select = in.getInt();
+    }
+
     void run(int time, int endTime, int period) {
         // TODO: probably also not zero-centered
         BlipBuffer output = this.output;
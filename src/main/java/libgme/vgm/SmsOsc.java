@@ -18,6 +18,8 @@
 
 package libgme.vgm;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -39,4 +41,19 @@ public class SmsOsc {
         outputSelect = 3;
         output = outputs[outputSelect];
     }
+
+    void saveState(ByteBuffer out) {
+        out.putInt(outputSelect);
+        out.putInt(delay);
+        out.putInt(lastAmp);
+        out.putInt(volume);
+    }
+
+    void restoreState(ByteBuffer in) {
+        outputSelect = in.getInt();
+        delay = in.getInt();
+        lastAmp = in.getInt();
+        volume = in.getInt();
+        output = outputs[outputSelect];
+    }
 }
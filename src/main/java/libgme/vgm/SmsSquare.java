@@ -18,6 +18,8 @@
 
 package libgme.vgm;
 
+import java.nio.ByteBuffer;
+
 import libgme.util.BlipBuffer;
 
 
@@ -33,6 +35,20 @@ public final class SmsSquare extends SmsOsc {
         super.reset();
     }
 
+    @Override
+    void saveState(ByteBuffer out) {
+        super.saveState(out);
+        out.putInt(period);
+        out.putInt(phase);
+    }
+
+    @Override
+    void restoreState(ByteBuffer in) {
+        super.restoreState(in);
+        period = in.getInt();
+        phase = in.getInt();
+    }
+
     void run(int time, int endTime) {
         int period = this.period;
 
@@ -18,11 +18,19 @@
 
 package libgme.vgm;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
 
 import libgme.ClassicEmu;
 import libgme.util.DataReader;
+import libgme.util.Kernels;
+import libgme.util.States;
 
 import static java.lang.System.getLogger;
 
@@ -40,20 +48,131 @@ public final class VgmEmu extends ClassicEmu {
 
     @Override
     protected int parseHeader(byte[] data) {
+        return parseHeader(ByteBuffer.wrap(data));
+    }
+
+    /** data is not copied, reading past the end is the end command */
+    @Override
+    protected int parseHeader(ByteBuffer data) {
         if (!isHeader(data, MAGIC))
             throw new IllegalArgumentException("Not a VGM file");
 
+        closeStream();
+        this.data = data;
+        base = 0;
+        int trackCount = parseHeader(data, data.limit());
+        events = precompiled ? compile() : null;
+        return trackCount;
+    }
+
+    /**
+     * Compiles commands into an event array when a file is loaded, the next load takes effect.
+     * Plays the same, commands are not decoded again at each frame and loop.
+     * Not for streamed files.
+     * Uses {@code libgme.vgm.precompile} system property as default.
+     */
+    public void setPrecompiled(boolean precompiled) {
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        setPrecompiled(Boolean.parseBoolean(System.getProperty("libgme.vgm.precompile", "false")));
+    }
+
+    /** FM is not in the blip buffers, so it's never silent while FM chips are used */
+    @Override
+    protected boolean mutedOutputChanged() {
+        return super.mutedOutputChanged() | fm[0] != null;
+    }
+
+    /** True if commands are compiled when a file is loaded */
+    public boolean isPrecompiled() {
+        return precompiled;
+    }
+
+    /**
+     * Opens the file from the start, called again to go back in the file.
+     * It may be gzipped.
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Loads a VGM or VGZ file without reading it whole, VGZ is inflated on the fly.
+     * Commands are read through a small window as played, and the last PCM data block
+     * is kept. Going back to the loop, the start or a restored state opens the source
+     * again. The source is kept open until another file is loaded.
+     * <p>
+     * The file is identified in saved states the same as when loaded whole, so states are shared between both.
+     *
+     * @throws IllegalArgumentException not a VGM file
+     */
+    public void loadFile(Source source) throws IOException {
+        InputStream in = open(source);
+        byte[] header;
+        try {
+            // as many bytes as a loaded file is identified by
+            header = in.readNBytes(identitySize);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        ByteBuffer h = ByteBuffer.wrap(header);
+        if (header.length < headerSize || !isHeader(h, MAGIC)) {
+            in.close();
+            throw new IllegalArgumentException("Not a VGM file");
+        }
+
+        closeStream();
+        events = null;
+        if (window == null)
+            window = new byte[windowSize];
+        System.arraycopy(header, 0, window, 0, header.length);
+        data = ByteBuffer.wrap(window).limit(header.length);
+        base = 0;
+        this.source = source;
+        stream = in;
+        streamPos = header.length;
+
+        int fileSize = (int) fileLength(h);
+        loaded(parseHeader(h, fileSize > headerSize ? fileSize : Integer.MAX_VALUE), identify(h));
+    }
+
+    /** The length written in the header, "end of file offset" */
+    private static long fileLength(ByteBuffer data) {
+        return (getLE32(data, 4) & 0xffff_ffffL) + 4;
+    }
+
+    /**
+     * Identifies a file by CRC-32 of its first {@link #identitySize} bytes, the header and the first commands,
+     * and the length in the header, so that a mapped file is not read whole and a streamed file is identified the same.
+     */
+    @Override
+    protected int identify(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().position(0).limit(Math.min(data.limit(), identitySize)));
+        long length = fileLength(data);
+        for (int i = 0; i < 64; i += 8) {
+            crc.update((int) (length >> i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /** Parses the header, commands are up to fileSize */
+    private int parseHeader(ByteBuffer data, int fileSize) {
         // TODO use custom noise taps if present
 
         // Data and loop
-        this.data = data;
+        this.fileSize = fileSize;
+        pcm = noPcm;
+        pcmBase = headerSize;
         loopBegin = getLE32(data, 28) + 28;
-        if (loopBegin <= 28) {
-            loopBegin = data.length;
-        } else if (data[data.length - 1] != cmd_end) {
-            data = DataReader.resize(data, data.length + 1);
-            data[data.length - 1] = cmd_end;
-        }
+        if (loopBegin <= 28)
+            loopBegin = fileSize;
 
         // PSG clock rate
         int clockRate = getLE32(data, 0x0c);
@@ -61,26 +180,35 @@ public final class VgmEmu extends ClassicEmu {
             clockRate = 3579545;
 logger.log(Level.DEBUG, "clockRate: %08x".formatted(clockRate));
         psgFactor = (int) ((float) psgTimeUnit / vgmRate * clockRate + 0.5);
+        // chips are kept across loads, so a pooled emulator doesn't allocate them again
         if ((clockRate & 0x4000_0000) != 0) {
 logger.log(Level.DEBUG, "dual apu");
-            apu[1] = new SmsApu();
+            if (apu[1] == null)
+                apu[1] = new SmsApu();
+        } else {
+            apu[1] = null;
         }
 
         // FM clock rate
         fm_clock_rate = getLE32(data, 0x2c);
-        fm[0] = null;
         if (fm_clock_rate != 0) {
             fm_clock_rate &= ~0xc000_0000;
-            fm[0] = new YM2612();
+            if (fm[0] == null)
+                fm[0] = new YM2612();
             buf.setVolume(0.7);
             fm[0].init(fm_clock_rate, sampleRate());
             if ((fm_clock_rate & 0x4000_0000) != 0) {
 logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
-                fm[1] = new YM2612();
+                if (fm[1] == null)
+                    fm[1] = new YM2612();
                 buf.setVolume(0.7);
                 fm[1].init(fm_clock_rate, sampleRate());
+            } else {
+                fm[1] = null;
             }
         } else {
+            fm[0] = null;
+            fm[1] = null;
             buf.setVolume(1.0);
         }
 
@@ -108,6 +236,17 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
     // private
 
     static final int vgmRate = 44100;
+    /** commands start at */
+    static final int headerSize = 0x40;
+    /** streamed bytes kept in memory, except PCM */
+    static final int windowSize = 0x4000;
+    /** bytes at the start identifying a file in saved states, read up front when streamed */
+    static final int identitySize = windowSize;
+    static final ByteBuffer noPcm = ByteBuffer.allocate(0);
+    /** events allocated first when compiled, doubled as needed */
+    static final int initialEvents = 0x400;
+    /** longest command except data of a data block */
+    static final int maxCommandLength = 7;
     static final int psgTimeBits = 12;
     static final int psgTimeUnit = 1 << psgTimeBits;
 
@@ -115,11 +254,35 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
     YM2612[] fm = new YM2612[2];
     int fm_clock_rate;
     int pos;
-    byte[] data;
+    /** window of the file, data [0] is at base, the whole file unless streamed */
+    ByteBuffer data;
+    int base;
+    /** length of the file */
+    int fileSize;
+    /** the last PCM data block, pcm [0] is at pcmBase, reading outside of it is silence */
+    ByteBuffer pcm;
+    int pcmBase;
+    /** null unless streamed */
+    Source source;
+    InputStream stream;
+    /** position of stream in the file */
+    int streamPos;
+    byte[] window;
+    boolean precompiled = Boolean.parseBoolean(System.getProperty("libgme.vgm.precompile", "false"));
+    /** time, ev_* | a << 8 | b << 16, offset of the command, null unless precompiled */
+    int[] events;
+    int eventCount;
+    /** events up to the end command from the start */
+    int mainEvents;
+    /** event to jump at the end, the end itself if not looped */
+    int loopEvent;
+    /** next event */
+    int event;
     int delay;
     int psgFactor;
     int loopBegin;
     final int[] fm_buf_lr = new int[48000 / 10 * 2];
+    final Kernels kernels = Kernels.instance;
     int[] fm_pos = new int[2];
     int dac_disabled; // -1 if disabled
     int pcm_data;
@@ -148,6 +311,21 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
     static final int cmd_ym2612_2_port0 = 0xa2;
     static final int cmd_ym2612_2_port1 = 0xa3;
 
+    static final int ev_nop = 0;
+    static final int ev_psg = 1;
+    static final int ev_gg_stereo = 2;
+    static final int ev_psg_2 = 3;
+    static final int ev_gg_stereo_2 = 4;
+    static final int ev_ym2612_port0 = 5;
+    static final int ev_ym2612_port1 = 6;
+    static final int ev_ym2612_2_port0 = 7;
+    static final int ev_ym2612_2_port1 = 8;
+    static final int ev_dac = 9;
+    static final int ev_pcm = 10;
+    static final int ev_pcm_seek = 11;
+    static final int ev_pcm_block = 12;
+    static final int ev_end = 13;
+
     static final int ym2612_dac_port = 0x2a;
     static final int pcm_block_type = 0x00;
 
@@ -180,13 +358,19 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
     public void startTrack(int track) {
         super.startTrack(track);
 
-        pos = 0x40;
+        pos = headerSize;
+        event = 0;
         delay = 0;
         pcm_data = pos;
         pcm_pos = pos;
+        pcm = noPcm;
+        pcmBase = pos;
         dac_amp = -1;
+        dac_disabled = 0;
 
         apu[0].reset();
+        if (apu[1] != null)
+            apu[1].reset();
         if (fm[0] != null)
             fm[0].reset();
         if (fm[1] != null)
@@ -220,6 +404,300 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
             dac_amp |= dac_disabled;
     }
 
+    /** PCM sample at p in the file, silence outside of the data */
+    private int pcm(int p) {
+        int i = p - pcmBase;
+        return i >= 0 && i < pcm.limit() ? pcm.get(i) & 0xff : 0x80;
+    }
+
+    /** Opens the source, gunzips if gzipped */
+    private static InputStream open(Source source) throws IOException {
+        InputStream in = new BufferedInputStream(source.open());
+        in.mark(2);
+        boolean gzipped = in.read() == 0x1f && in.read() == 0x8b;
+        in.reset();
+        return gzipped ? DataReader.openGZIP(in) : in;
+    }
+
+    /** Closes the streamed file if any */
+    private void closeStream() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+logger.log(Level.DEBUG, "close: " + e);
+            }
+            stream = null;
+        }
+        source = null;
+    }
+
+    /**
+     * Moves the window to pos and reads ahead, opens the source again to go back.
+     *
+     * @return false if the file is broken, the track is ended then
+     */
+    private boolean fill() {
+        try {
+            if (pos < base) {
+logger.log(Level.DEBUG, "reopen to: " + pos);
+                stream.close();
+                stream = open(source);
+                streamPos = 0;
+                base = 0;
+                data.limit(0);
+            }
+            int kept = base + data.limit() - pos;
+            if (kept > 0) {
+                System.arraycopy(window, pos - base, window, 0, kept);
+            } else {
+                kept = 0;
+                stream.skipNBytes(pos - streamPos);
+                streamPos = pos;
+            }
+            base = pos;
+            int n = stream.readNBytes(window, kept, window.length - kept);
+            streamPos += n;
+            data.limit(kept + n);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.ERROR, "emulation error: " + e);
+            setTrackEnded();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the PCM data block at pos, from the window and the stream if streamed.
+     *
+     * @return false if the file is broken, the track is ended then
+     */
+    private boolean readPcm(int length) {
+        try {
+            if (length < 0)
+                throw new IOException("data block: " + length);
+            pcmBase = pos;
+            if (source == null) {
+                pcm = data.slice(pos, Math.min(length, data.limit() - pos));
+                return true;
+            }
+            byte[] block = new byte[length];
+            int kept = Math.min(base + data.limit() - pos, length);
+            System.arraycopy(window, pos - base, block, 0, kept);
+            if (kept < length) {
+                int n = stream.readNBytes(block, kept, length - kept);
+                streamPos += n;
+                base = streamPos;
+                data.limit(0);
+                if (n < length - kept)
+                    throw new EOFException("data block");
+            }
+            pcm = ByteBuffer.wrap(block);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.ERROR, "emulation error: " + e);
+            setTrackEnded();
+            return false;
+        }
+    }
+
+    /** Reads the PCM data block at pcm_data again for a restored state */
+    private void loadPcm() {
+        pcm = noPcm;
+        pcmBase = pcm_data;
+        if (pcm_data < headerSize + 7)
+            return;
+        if (source == null) {
+            ByteBuffer h = data.slice(pcm_data - 7, 7);
+            int length = getLE32(h, 3);
+            if ((h.get(0) & 0xff) == cmd_data_block && h.get(1) == cmd_end && h.get(2) == pcm_block_type && length >= 0)
+                pcm = data.slice(pcm_data, Math.min(length, data.limit() - pcm_data));
+            return;
+        }
+        try (InputStream in = open(source)) {
+            in.skipNBytes(pcm_data - 7);
+            byte[] h = in.readNBytes(7);
+            int length = getLE32(h, 3);
+            if ((h[0] & 0xff) == cmd_data_block && h[1] == cmd_end && h[2] == pcm_block_type && length >= 0)
+                pcm = ByteBuffer.wrap(in.readNBytes(length));
+        } catch (IOException | IndexOutOfBoundsException e) {
+            logger.log(Level.ERROR, "emulation error: " + e);
+        }
+    }
+
+    /**
+     * Compiles commands into events, from the start to the end command, then from the loop
+     * if it's not at a command of them. An event is made for each command, so that the
+     * position of a saved state is the same as when not compiled.
+     */
+    private int[] compile() {
+        // grown as compiled, the file length is mostly data blocks in files with PCM
+        events = new int[initialEvents * 3];
+        eventCount = 0;
+        loopEvent = -1;
+        int end = compile(headerSize);
+        mainEvents = eventCount;
+        if (loopEvent < 0) {
+            if (loopBegin < fileSize) {
+                loopEvent = eventCount;
+                compile(loopBegin);
+            } else {
+                loopEvent = end;
+            }
+        }
+logger.log(Level.DEBUG, "compiled: " + eventCount + " events, loop: " + loopEvent);
+        return java.util.Arrays.copyOf(events, eventCount * 3);
+    }
+
+    /**
+     * Compiles commands from pos to the end command.
+     *
+     * @return index of the end event
+     */
+    private int compile(int pos) {
+        int time = 0;
+        int offset = pos;
+        try {
+            while (true) {
+                if (pos == loopBegin && loopEvent < 0)
+                    loopEvent = eventCount;
+                offset = pos;
+                int t = time;
+                int cmd = cmd_end;
+                if (pos < data.limit())
+                    cmd = data.get(pos++) & 0xff;
+                int ev = ev_nop;
+                int a = 0;
+                int b = 0;
+                switch (cmd) {
+                    case cmd_end:
+                        addEvent(t, ev_end, offset);
+                        return eventCount - 1;
+
+                    case cmd_delay_735:
+                        time += 735;
+                        break;
+
+                    case cmd_delay_882:
+                        time += 882;
+                        break;
+
+                    case cmd_gg_stereo:
+                        ev = ev_gg_stereo;
+                        b = data.get(pos++) & 0xff;
+                        break;
+
+                    case cmd_psg:
+                        ev = ev_psg;
+                        b = data.get(pos++) & 0xff;
+                        break;
+
+                    case cmd_gg_stereo_2:
+                        ev = apu[1] != null ? ev_gg_stereo_2 : ev_nop;
+                        b = data.get(pos++) & 0xff;
+                        break;
+
+                    case cmd_psg_2:
+                        ev = apu[1] != null ? ev_psg_2 : ev_nop;
+                        b = data.get(pos++) & 0xff;
+                        break;
+
+                    case cmd_delay:
+                        time += (data.get(pos + 1) & 0xff) * 0x100 + (data.get(pos) & 0xff);
+                        pos += 2;
+                        break;
+
+                    case cmd_byte_delay:
+                        time += data.get(pos++) & 0xff;
+                        break;
+
+                    case cmd_ym2612_port0:
+                    case cmd_ym2612_2_port0:
+                        a = data.get(pos++) & 0xff;
+                        b = data.get(pos++) & 0xff;
+                        if (fm[cmd == cmd_ym2612_port0 ? 0 : 1] != null)
+                            ev = a == ym2612_dac_port ? ev_dac : cmd == cmd_ym2612_port0 ? ev_ym2612_port0 : ev_ym2612_2_port0;
+                        break;
+
+                    case cmd_ym2612_port1:
+                    case cmd_ym2612_2_port1:
+                        a = data.get(pos++) & 0xff;
+                        b = data.get(pos++) & 0xff;
+                        if (fm[cmd == cmd_ym2612_port1 ? 0 : 1] != null)
+                            ev = cmd == cmd_ym2612_port1 ? ev_ym2612_port1 : ev_ym2612_2_port1;
+                        break;
+
+                    case cmd_data_block:
+                        if (data.get(pos) != cmd_end || getLE32(data, pos + 2) < 0) {
+                            logger.log(Level.ERROR, "emulation error");
+                            addEvent(t, ev_end, offset);
+                            return eventCount - 1;
+                        }
+                        if (data.get(pos + 1) == pcm_block_type)
+                            ev = ev_pcm_block;
+                        pos += 6 + getLE32(data, pos + 2);
+                        break;
+
+                    case cmd_pcm_seek:
+                        ev = ev_pcm_seek;
+                        pos += 4;
+                        break;
+
+                    default:
+                        switch (cmd & 0xF0) {
+                            case cmd_pcm_delay:
+                                ev = ev_pcm;
+                                time += cmd & 0x0F;
+                                break;
+
+                            case cmd_short_delay:
+                                time += (cmd & 0x0F) + 1;
+                                break;
+
+                            default:
+                                // ym2413 etc. are not emulated
+                                pos += commandLength(cmd) - 1;
+                                break;
+                        }
+                }
+                addEvent(t, ev | a << 8 | b << 16, offset);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            logger.log(Level.ERROR, "emulation error: " + e);
+            addEvent(time, ev_end, offset);
+            return eventCount - 1;
+        }
+    }
+
+    private void addEvent(int time, int op, int offset) {
+        if (events.length < (eventCount + 1) * 3)
+            events = java.util.Arrays.copyOf(events, events.length * 2);
+        events[eventCount * 3] = time;
+        events[eventCount * 3 + 1] = op;
+        events[eventCount * 3 + 2] = offset;
+        eventCount++;
+    }
+
+    /** The first event at the command at pos or after, for a restored state */
+    private int findEvent(int pos) {
+        int e = findEvent(pos, 0, mainEvents);
+        if (e < mainEvents && events[e * 3 + 2] == pos || mainEvents == eventCount)
+            return Math.min(e, mainEvents - 1);
+        e = findEvent(pos, mainEvents, eventCount);
+        return Math.min(e, eventCount - 1);
+    }
+
+    private int findEvent(int pos, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (events[mid * 3 + 2] < pos)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
     @Override
     protected int runMsec(int msec) {
         int duration = vgmRate / 100 * msec / 10;
@@ -232,12 +710,97 @@ logger.log(Level.DEBUG, "dual fm: %08x".formatted(fm_clock_rate));
 
         int time = delay;
         boolean endOfStream = false;
+        if (events != null) {
+            int[] events = this.events;
+            int e = event;
+            int timeBase = events[e * 3] - time;
+            while ((time = events[e * 3] - timeBase) < duration && !endOfStream) {
+                int op = events[e * 3 + 1];
+                switch (op & 0xff) {
+                    case ev_psg:
+                        apu[0].writeData(toPSGTime(time), op >>> 16);
+                        break;
+
+                    case ev_gg_stereo:
+                        apu[0].writeGG(toPSGTime(time), op >>> 16);
+                        break;
+
+                    case ev_psg_2:
+                        apu[1].writeData(toPSGTime(time), op >>> 16);
+                        break;
+
+                    case ev_gg_stereo_2:
+                        apu[1].writeGG(toPSGTime(time), op >>> 16);
+                        break;
+
+                    case ev_ym2612_port0:
+                    case ev_ym2612_2_port0: {
+                        int index = (op & 0xff) == ev_ym2612_port0 ? 0 : 1;
+                        int port = op >> 8 & 0xff;
+                        int val = op >>> 16;
+                        if (port == 0x2B) {
+                            dac_disabled = (val >> 7 & 1) - 1;
+                            dac_amp |= dac_disabled;
+                        }
+                        runFM(index, time);
+                        fm[index].write0(port, val);
+                        break;
+                    }
+
+                    case ev_ym2612_port1:
+                    case ev_ym2612_2_port1: {
+                        int index = (op & 0xff) == ev_ym2612_port1 ? 0 : 1;
+                        runFM(index, time);
+                        fm[index].write1(op >> 8 & 0xff, op >>> 16);
+                        break;
+                    }
+
+                    case ev_dac:
+                        write_pcm(time, op >>> 16);
+                        break;
+
+                    case ev_pcm:
+                        write_pcm(time, pcm(pcm_pos++));
+                        break;
+
+                    case ev_pcm_seek:
+                        pcm_pos = pcm_data + getLE32(data, events[e * 3 + 2] + 1);
+                        break;
+
+                    case ev_pcm_block: {
+                        int offset = events[e * 3 + 2];
+                        pcm_data = offset + 7;
+                        pcmBase = pcm_data;
+                        pcm = data.slice(pcm_data, Math.min(getLE32(data, offset + 3), data.limit() - pcm_data));
+                        break;
+                    }
+
+                    case ev_end:
+                        if (loopBegin < fileSize)
+                            setTrackLooped();
+                        endOfStream = !endlessLoopFlag || loopEvent == e;
+                        timeBase += events[loopEvent * 3] - events[e * 3];
+                        e = loopEvent;
+                        continue;
+                }
+                e++;
+            }
+            event = e;
+            pos = events[e * 3 + 2];
+            // the frame is done, commands below are not read
+        }
         while (time < duration && !endOfStream) {
+            if (source != null && (pos < base || pos + maxCommandLength - base > data.limit()) && !fill()) {
+                endOfStream = true;
+                break;
+            }
             int cmd = cmd_end;
-            if (pos < data.length)
-                cmd = data[pos++] & 0xff;
+            if (pos - base < data.limit())
+                cmd = data.get(pos++ - base) & 0xff;
             switch (cmd) {
                 case cmd_end:
+                    if (loopBegin < fileSize)
+                        setTrackLooped();
                     endOfStream = !endlessLoopFlag;
 logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
                     pos = loopBegin;
@@ -252,28 +815,28 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
                     break;
 
                 case cmd_gg_stereo:
-                    apu[0].writeGG(toPSGTime(time), data[pos++] & 0xff);
+                    apu[0].writeGG(toPSGTime(time), data.get(pos++ - base) & 0xff);
                     break;
 
                 case cmd_psg:
-                    apu[0].writeData(toPSGTime(time), data[pos++] & 0xff);
+                    apu[0].writeData(toPSGTime(time), data.get(pos++ - base) & 0xff);
                     break;
 
                 case cmd_gg_stereo_2:
-                    apu[1].writeGG(toPSGTime(time), data[pos++] & 0xff);
+                    apu[1].writeGG(toPSGTime(time), data.get(pos++ - base) & 0xff);
                     break;
 
                 case cmd_psg_2:
-                    apu[1].writeData(toPSGTime(time), data[pos++] & 0xff);
+                    apu[1].writeData(toPSGTime(time), data.get(pos++ - base) & 0xff);
                     break;
 
                 case cmd_delay:
-                    time += (data[pos + 1] & 0xff) * 0x100 + (data[pos] & 0xff);
+                    time += (data.get(pos + 1 - base) & 0xff) * 0x100 + (data.get(pos - base) & 0xff);
                     pos += 2;
                     break;
 
                 case cmd_byte_delay:
-                    time += data[pos++] & 0xff;
+                    time += data.get(pos++ - base) & 0xff;
                     break;
 
                 case cmd_ym2413:
@@ -290,8 +853,8 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
 
                 case cmd_ym2612_port0:
                     if (fm[0] != null) {
-                        int port = data[pos++] & 0xff;
-                        int val = data[pos++] & 0xff;
+                        int port = data.get(pos++ - base) & 0xff;
+                        int val = data.get(pos++ - base) & 0xff;
                         if (port == ym2612_dac_port) {
                             write_pcm(time, val);
                         } else {
@@ -310,8 +873,8 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
                 case cmd_ym2612_port1:
                     if (fm[0] != null) {
                         runFM(0, time);
-                        int port = data[pos++] & 0xff;
-                        fm[0].write1(port, data[pos++] & 0xff);
+                        int port = data.get(pos++ - base) & 0xff;
+                        fm[0].write1(port, data.get(pos++ - base) & 0xff);
                     } else {
                         pos += 2;
                     }
@@ -319,8 +882,8 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
 
                 case cmd_ym2612_2_port0:
                     if (fm[1] != null) {
-                        int port = data[pos++] & 0xff;
-                        int val = data[pos++] & 0xff;
+                        int port = data.get(pos++ - base) & 0xff;
+                        int val = data.get(pos++ - base) & 0xff;
                         if (port == ym2612_dac_port) {
                             write_pcm(time, val);
                         } else {
@@ -339,35 +902,40 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
                 case cmd_ym2612_2_port1:
                     if (fm[1] != null) {
                         runFM(1, time);
-                        int port = data[pos++] & 0xff;
-                        fm[1].write1(port, data[pos++] & 0xff);
+                        int port = data.get(pos++ - base) & 0xff;
+                        fm[1].write1(port, data.get(pos++ - base) & 0xff);
                     } else {
                         pos += 2;
                     }
                     break;
 
                 case cmd_data_block:
-                    if (data[pos++] != cmd_end) {
+                    if (data.get(pos++ - base) != cmd_end) {
                         setTrackEnded();
                         logger.log(Level.ERROR, "emulation error");
                     }
-                    int type = data[pos++];
-                    long size = getLE32(data, pos);
+                    int type = data.get(pos++ - base);
+                    long size = getLE32(data, pos - base);
                     pos += 4;
-                    if (type == pcm_block_type)
+                    if (type == pcm_block_type) {
                         pcm_data = pos;
+                        if (!readPcm((int) size)) {
+                            endOfStream = true;
+                            break;
+                        }
+                    }
                     pos += (int) size;
                     break;
 
                 case cmd_pcm_seek:
-                    pcm_pos = pcm_data + getLE32(data, pos);
+                    pcm_pos = pcm_data + getLE32(data, pos - base);
                     pos += 4;
                     break;
 
                 default:
                     switch (cmd & 0xF0) {
                         case cmd_pcm_delay:
-                            write_pcm(time, data[pcm_pos++] & 0xff);
+                            write_pcm(time, pcm(pcm_pos++));
                             time += cmd & 0x0F;
                             break;
 
@@ -394,10 +962,10 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
         int endTime = toPSGTime(duration);
         delay = time - duration;
         apu[0].endFrame(endTime);
-        if (pos >= data.length || endOfStream) {
+        if (pos >= fileSize || endOfStream) {
             setTrackEnded();
-            if (pos > data.length) {
-                pos = data.length;
+            if (pos > fileSize) {
+                pos = fileSize;
                 setTrackEnded(); // went past end
                 logger.log(Level.ERROR, "emulation error");
             }
@@ -409,25 +977,75 @@ logger.log(Level.TRACE, "LOOP: " + endlessLoopFlag);
     }
 
     @Override
-    protected void mixSamples(byte[] out, int out_off, int count) {
+    protected void saveState_(ByteBuffer out) {
+        super.saveState_(out);
+        out.putInt(pos);
+        out.putInt(delay);
+        out.putInt(pcm_data);
+        out.putInt(pcm_pos);
+        out.putInt(dac_amp);
+        out.putInt(dac_disabled);
+        States.putInts(out, fm_pos);
+        // fm samples not mixed yet
+        if (fm[0] != null)
+            States.putInts(out, fm_buf_lr, fm_pos[0], buf.samplesAvail());
+        for (SmsApu a : apu) {
+            if (a != null)
+                a.saveState(out);
+        }
+        for (YM2612 f : fm) {
+            if (f != null)
+                f.saveState(out);
+        }
+    }
+
+    @Override
+    protected void restoreState_(ByteBuffer in) {
+        super.restoreState_(in);
+        pos = in.getInt();
+        delay = in.getInt();
+        pcm_data = in.getInt();
+        pcm_pos = in.getInt();
+        dac_amp = in.getInt();
+        dac_disabled = in.getInt();
+        if (pcm_data != pcmBase)
+            loadPcm();
+        if (events != null)
+            event = findEvent(pos);
+        States.getInts(in, fm_pos);
+        if (fm[0] != null)
+            States.getInts(in, fm_buf_lr, fm_pos[0], buf.samplesAvail());
+        for (SmsApu a : apu) {
+            if (a != null)
+                a.restoreState(in);
+        }
+        for (YM2612 f : fm) {
+            if (f != null)
+                f.restoreState(in);
+        }
+    }
+
+    /** FM is mixed into stereo output */
+    @Override
+    protected int playMono_(short[] out, int off, int count) {
+        return fm[0] != null ? downmix(out, off, count) : super.playMono_(out, off, count);
+    }
+
+    @Override
+    protected void mixSamples(short[] out, int out_off, int count) {
         if (fm[0] == null)
             return;
 
-        out_off *= 2;
-        int in_off = fm_pos[0];
-
-        while (--count >= 0) {
-            int s = (out[out_off] << 8) + (out[out_off + 1] & 0xff);
-            s = (s >> 2) + fm_buf_lr[in_off];
-            in_off++;
-            if ((short) s != s)
-                s = (s >> 31) ^ 0x7fff;
-            out[out_off] = (byte) (s >> 8);
-            out_off++;
-            out[out_off] = (byte) s;
-            out_off++;
-        }
+        kernels.mixQuarter(out, out_off, fm_buf_lr, fm_pos[0], count);
+        fm_pos[0] += count;
+    }
+
+    @Override
+    protected void mixSamples(float[] out, int out_off, int count) {
+        if (fm[0] == null)
+            return;
 
-        fm_pos[0] = in_off;
+        kernels.mixQuarter(out, out_off, fm_buf_lr, fm_pos[0], count, 1f / 0x8000);
+        fm_pos[0] += count;
     }
 }
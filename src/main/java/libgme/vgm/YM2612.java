@@ -19,6 +19,11 @@ package libgme.vgm;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import libgme.util.States;
 
 import static java.lang.System.getLogger;
 
@@ -186,18 +191,18 @@ public final class YM2612 {
     private static final int[] TL_TAB = new int[TLLEN * 2];
     private static final int[] ENV_TAB = new int[2 * ENVLEN + 8]; // uint
     private static final int[] DECAY_TO_ATTACK = new int[ENVLEN];    // uint
-    private final int[] FINC_TAB = new int[2048];    // uint
+    private int[] FINC_TAB;    // uint, shared, see Tables
     static final int AR_NULL_RATE = 128;
-    private final int[] AR_TAB = new int[AR_NULL_RATE + NULL_RATE_SIZE];    // uint
+    private int[] AR_TAB;    // uint, shared
     static final int DR_NULL_RATE = 96;
-    private final int[] DR_TAB = new int[DR_NULL_RATE + NULL_RATE_SIZE];    // uint
-    private final int[][] DT_TAB = new int[8][32];    // uint
+    private int[] DR_TAB;    // uint, shared
+    private int[][] DT_TAB;    // uint, shared
     private static final int[] SL_TAB = new int[16];         // uint
     private static final int[] LFO_ENV_TAB = new int[LFOLEN];
     private static final int[] LFO_FREQ_TAB = new int[LFOLEN];
     private final int[] LFO_ENV_UP = new int[UPD_SIZE];
     private final int[] LFO_FREQ_UP = new int[UPD_SIZE];
-    private final int[] LFO_INC_TAB = new int[8];
+    private int[] LFO_INC_TAB;    // shared
     private int in0, in1, in2, in3;
     private int en0, en1, en2, en3;
     private int int_cnt;
@@ -227,6 +232,90 @@ public final class YM2612 {
     final Channel[] channels = new Channel[6];
     final int[][] regs = new int[2][0x100];
 
+    /**
+     * Rate dependent tables, immutable and shared by all instances
+     * running at the same clock and sample rate.
+     */
+    private static final class Tables {
+
+        /** key is clock and rate packed in a long */
+        private static final Map<Long, Tables> cache = new ConcurrentHashMap<>();
+
+        static Tables of(int clock, int rate) {
+            return cache.computeIfAbsent((long) clock << 32 | (rate & 0xffff_ffffL), k -> new Tables(clock, rate));
+        }
+
+        final double frequency;
+        final int timerBase;
+        final int[] FINC_TAB = new int[2048];    // uint
+        final int[] AR_TAB = new int[AR_NULL_RATE + NULL_RATE_SIZE];    // uint
+        final int[] DR_TAB = new int[DR_NULL_RATE + NULL_RATE_SIZE];    // uint
+        final int[][] DT_TAB = new int[8][32];    // uint
+        final int[] LFO_INC_TAB = new int[8];
+
+        private Tables(int clock, int rate) {
+logger.log(Level.DEBUG, "tables: clock: " + clock + ", rate: " + rate);
+            frequency = ((double) clock / (double) rate) / 144.0;
+            timerBase = (int) (frequency * 4096.0);
+
+            // Frequency Step Table
+
+            for (int i = 0; i < 2048; i++) {
+                double x = (double) i * frequency;
+
+                x *= 1 << (SIN_LBITS + SIN_HBITS - (21 - 7));
+                x /= 2.0; // because mul = value * 2
+                FINC_TAB[i] = (int) x; // (unsigned int) x;
+            }
+
+            // Attack & Decay rate Table
+
+            for (int i = 0; i < 4; i++) {
+                AR_TAB[i] = 0;
+                DR_TAB[i] = 0;
+            }
+
+            for (int i = 0; i < 60; i++) {
+                double x = frequency;
+                x *= 1.0 + ((i & 3) * 0.25); // bits 0-1 : x1.00, x1.25, x1.50, x1.75
+                x *= 1 << ((i >> 2));        // bits 2-5 : shift bits (x2^0 - x2^15)
+                x *= ENVLEN << ENV_LBITS;    // on ajuste pour le tableau ENV_TAB
+
+                AR_TAB[i + 4] = (int) (x / AR_RATE); // (unsigned int) (x / AR_RATE);
+                DR_TAB[i + 4] = (int) (x / DR_RATE); // (unsigned int) (x / DR_RATE);
+            }
+
+            for (int i = 64; i < 96; i++) {
+                AR_TAB[i] = AR_TAB[63];
+                DR_TAB[i] = DR_TAB[63];
+                AR_TAB[i - 64 + AR_NULL_RATE] = 0;
+                DR_TAB[i - 64 + DR_NULL_RATE] = 0;
+            }
+
+            // Detune Table
+            int j;
+            for (int i = 0; i < 4; i++) {
+                for (j = 0; j < 32; j++) {
+                    double x = (double) DT_DEF_TAB[(i << 5) + j] * frequency * (double) (1 << (SIN_LBITS + SIN_HBITS - 21));
+                    DT_TAB[i + 0][j] = (int) x;
+                    DT_TAB[i + 4][j] = (int) -x;
+                }
+            }
+
+            // LFO Table
+            j = rate; // (rate * interStep) / 0x4000
+
+            LFO_INC_TAB[0] = (int) (3.98 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[1] = (int) (5.56 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[2] = (int) (6.02 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[3] = (int) (6.37 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[4] = (int) (6.88 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[5] = (int) (9.63 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[6] = (int) (48.1 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+            LFO_INC_TAB[7] = (int) (72.2 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+        }
+    }
+
     /**
      * Creates a new instance of YM2612
      */
@@ -250,69 +339,18 @@ public final class YM2612 {
         this.clock = clock;
         this.rate = rate;
 
-        frequency = ((double) this.clock / (double) this.rate) / 144.0;
-        timerBase = (int) (frequency * 4096.0);
+        Tables tables = Tables.of(clock, rate);
+        frequency = tables.frequency;
+        timerBase = tables.timerBase;
 
         interStep = 0x4000;
         interCnt = 0;
 
-        // ----
-
-        // Frequency Step Table
-
-        for (int i = 0; i < 2048; i++) {
-            double x = (double) i * frequency;
-
-            x *= 1 << (SIN_LBITS + SIN_HBITS - (21 - 7));
-            x /= 2.0; // because mul = value * 2
-            FINC_TAB[i] = (int) x; // (unsigned int) x;
-        }
-
-        // Attack & Decay rate Table
-
-        for (int i = 0; i < 4; i++) {
-            AR_TAB[i] = 0;
-            DR_TAB[i] = 0;
-        }
-
-        for (int i = 0; i < 60; i++) {
-            double x = frequency;
-            x *= 1.0 + ((i & 3) * 0.25); // bits 0-1 : x1.00, x1.25, x1.50, x1.75
-            x *= 1 << ((i >> 2));        // bits 2-5 : shift bits (x2^0 - x2^15)
-            x *= ENVLEN << ENV_LBITS;    // on ajuste pour le tableau ENV_TAB
-
-            AR_TAB[i + 4] = (int) (x / AR_RATE); // (unsigned int) (x / AR_RATE);
-            DR_TAB[i + 4] = (int) (x / DR_RATE); // (unsigned int) (x / DR_RATE);
-        }
-
-        for (int i = 64; i < 96; i++) {
-            AR_TAB[i] = AR_TAB[63];
-            DR_TAB[i] = DR_TAB[63];
-            AR_TAB[i - 64 + AR_NULL_RATE] = 0;
-            DR_TAB[i - 64 + DR_NULL_RATE] = 0;
-        }
-
-        // Detune Table
-        int j;
-        for (int i = 0; i < 4; i++) {
-            for (j = 0; j < 32; j++) {
-                double x = (double) DT_DEF_TAB[(i << 5) + j] * frequency * (double) (1 << (SIN_LBITS + SIN_HBITS - 21));
-                DT_TAB[i + 0][j] = (int) x;
-                DT_TAB[i + 4][j] = (int) -x;
-            }
-        }
-
-        // LFO Table
-        j = (int) ((this.rate * interStep) / 0x4000);
-
-        LFO_INC_TAB[0] = (int) (3.98 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[1] = (int) (5.56 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[2] = (int) (6.02 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[3] = (int) (6.37 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[4] = (int) (6.88 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[5] = (int) (9.63 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[6] = (int) (48.1 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
-        LFO_INC_TAB[7] = (int) (72.2 * (double) (1 << (LFO_HBITS + LFO_LBITS)) / j);
+        FINC_TAB = tables.FINC_TAB;
+        AR_TAB = tables.AR_TAB;
+        DR_TAB = tables.DR_TAB;
+        DT_TAB = tables.DT_TAB;
+        LFO_INC_TAB = tables.LFO_INC_TAB;
 
         reset();
         return 0;
@@ -548,6 +586,139 @@ logger.log(Level.TRACE, String.format("fm1: a: %02x, d: %02x", addr, data));
         interCnt = int_cnt;
     }
 
+    /** Writes chip state, rate dependent tables are not included */
+    public void saveState(ByteBuffer out) {
+        out.putInt(status);
+        out.putInt(lfoCnt);
+        out.putInt(lfoInc);
+        out.putInt(timerA);
+        out.putInt(timerAL);
+        out.putInt(timerACnt);
+        out.putInt(timerB);
+        out.putInt(timerBL);
+        out.putInt(timerBCnt);
+        out.putInt(mode);
+        out.putInt(dac);
+        out.putLong(interCnt);
+        for (int[] r : regs) {
+            States.putInts(out, r);
+        }
+        for (Channel ch : channels) {
+            States.putInts(out, ch.s0Out);
+            out.putInt(ch.oldOutD);
+            out.putInt(ch.outD);
+            out.putInt(ch.left);
+            out.putInt(ch.right);
+            out.putInt(ch.algo);
+            out.putInt(ch.fb);
+            out.putInt(ch.fms);
+            out.putInt(ch.ams);
+            out.putInt(ch.fFlag);
+            States.putInts(out, ch.fNum);
+            States.putInts(out, ch.fOct);
+            States.putInts(out, ch.kc);
+            for (Slot sl : ch.slots) {
+                out.putInt(indexOf(DT_TAB, sl.dt));
+                out.putInt(sl.mul);
+                out.putInt(sl.tl);
+                out.putInt(sl.tll);
+                out.putInt(sl.sll);
+                out.putInt(sl.ksrS);
+                out.putInt(sl.ksr);
+                out.putInt(sl.seg);
+                out.putInt(sl.ar);
+                out.putInt(sl.dr);
+                out.putInt(sl.sr);
+                out.putInt(sl.rr);
+                out.putInt(sl.fCnt);
+                out.putInt(sl.fInc);
+                out.putInt(sl.eCurp);
+                out.putInt(sl.eCnt);
+                out.putInt(sl.eInc);
+                out.putInt(sl.eCmp);
+                out.putInt(sl.eIncA);
+                out.putInt(sl.eIncD);
+                out.putInt(sl.eIncS);
+                out.putInt(sl.eIncR);
+                out.putInt(sl.inD);
+                out.putInt(sl.chgEnM);
+                out.putInt(sl.ams);
+                out.putInt(sl.amsOn);
+            }
+        }
+    }
+
+    /** Reads state written by {@link #saveState(ByteBuffer)}, must be initialized with the same clock and rate */
+    public void restoreState(ByteBuffer in) {
+        status = in.getInt();
+        lfoCnt = in.getInt();
+        lfoInc = in.getInt();
+        timerA = in.getInt();
+        timerAL = in.getInt();
+        timerACnt = in.getInt();
+        timerB = in.getInt();
+        timerBL = in.getInt();
+        timerBCnt = in.getInt();
+        mode = in.getInt();
+        dac = in.getInt();
+        interCnt = in.getLong();
+        for (int[] r : regs) {
+            States.getInts(in, r);
+        }
+        for (Channel ch : channels) {
+            States.getInts(in, ch.s0Out);
+            ch.oldOutD = in.getInt();
+            ch.outD = in.getInt();
+            ch.left = in.getInt();
+            ch.right = in.getInt();
+            ch.algo = in.getInt();
+            ch.fb = in.getInt();
+            ch.fms = in.getInt();
+            ch.ams = in.getInt();
+            ch.fFlag = in.getInt();
+            States.getInts(in, ch.fNum);
+            States.getInts(in, ch.fOct);
+            States.getInts(in, ch.kc);
+            for (Slot sl : ch.slots) {
+                sl.dt = DT_TAB[in.getInt()];
+                sl.mul = in.getInt();
+                sl.tl = in.getInt();
+                sl.tll = in.getInt();
+                sl.sll = in.getInt();
+                sl.ksrS = in.getInt();
+                sl.ksr = in.getInt();
+                sl.seg = in.getInt();
+                sl.ar = in.getInt();
+                sl.dr = in.getInt();
+                sl.sr = in.getInt();
+                sl.rr = in.getInt();
+                sl.fCnt = in.getInt();
+                sl.fInc = in.getInt();
+                sl.eCurp = in.getInt();
+                sl.eCnt = in.getInt();
+                sl.eInc = in.getInt();
+                sl.eCmp = in.getInt();
+                sl.eIncA = in.getInt();
+                sl.eIncD = in.getInt();
+                sl.eIncS = in.getInt();
+                sl.eIncR = in.getInt();
+                sl.inD = in.getInt();
+                sl.chgEnM = in.getInt();
+                sl.ams = in.getInt();
+                sl.amsOn = in.getInt();
+            }
+        }
+    }
+
+    /** dt is a row of the shared table, saved as its index */
+    private static int indexOf(int[][] table, int[] row) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == row)
+                return i;
+        }
+        throw new IllegalStateException("unknown dt");
+    }
+
     public void synchronizeTimers(int length) {
 
         int i = timerBase * length;
@@ -7,22 +7,30 @@
 package vavi.sound.sampled.emu;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Map;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 
 import libgme.MusicEmu;
-import vavi.io.OutputEngine;
-import vavi.io.OutputEngineInputStream;
 
 import static java.lang.System.getLogger;
+import static javax.sound.sampled.AudioFormat.Encoding.PCM_FLOAT;
 
 
 /**
- * Converts an Emulator music BitStream into a PCM 16bits/sample audio stream.
+ * Converts an Emulator music BitStream into a PCM 16bits/sample audio stream,
+ * or 32bits float one when the target encoding is {@code PCM_FLOAT}.
+ * The emulator renders at the sample rate and channels of the target format.
+ * <p>
+ * Samples are rendered on demand by {@link #read(byte[], int, int)}, as many as requested,
+ * and packed into the caller's array. The emulators output {@code short[]}/{@code float[]},
+ * so a sample array reused by the emulator is the one copy in between, there is no piping.
  *
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 241116 nsano initial version <br>
@@ -39,25 +47,77 @@ class Emu2PcmAudioInputStream extends AudioInputStream {
      * @param length the length in sample frames of the data in this stream.
      */
     public Emu2PcmAudioInputStream(AudioFormat sourceFormat, AudioFormat format, long length, Map<String, Object> props) throws IOException {
-        super(new OutputEngineInputStream(new EmuOutputEngine((MusicEmu) sourceFormat.getProperty("emu"), props)), format, length);
+        this(new EmuInputStream((MusicEmu) sourceFormat.getProperty("emu"), (ByteBuffer) sourceFormat.getProperty("data"), format, props), format, length);
     }
 
     /** */
-    private static class EmuOutputEngine implements OutputEngine {
+    private Emu2PcmAudioInputStream(EmuInputStream stream, AudioFormat format, long length) throws IOException {
+        super(stream, format, length);
+        this.emu = stream.emu;
+    }
 
-        /** */
-        private OutputStream out;
+    /** */
+    private final MusicEmu emu;
+
+    /**
+     * Fast-forwarded in the emulator without generating sound,
+     * nothing is buffered since samples are rendered on demand.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        int frameSize = format.getFrameSize();
+        if (frameLength != AudioSystem.NOT_SPECIFIED) {
+            n = Math.min(n, (frameLength - framePos) * frameSize);
+        }
+        n -= n % frameSize;
+        if (n <= 0 || emu.trackEnded()) {
+            return 0;
+        }
+
+        int sampleSize = format.getSampleSizeInBits() / 8;
+        long bytes = emu.skip(n / sampleSize) * sampleSize;
+        framePos += bytes / frameSize;
+logger.log(Level.DEBUG, "fast-forward: " + bytes + " bytes");
+        return bytes;
+    }
+
+    /** Renders samples on demand, packed into the array given to read() */
+    private static class EmuInputStream extends InputStream {
+
+        /** bytes reported by available() while playing, same as a block of EmuPlayer */
+        private static final int blockSize = 8192;
 
         /** */
         private final MusicEmu emu;
 
         /** */
-        private final byte[] buf = new byte[8192];
+        private final boolean isFloat;
+
+        /** */
+        private final ByteOrder order;
 
         /** */
-        public EmuOutputEngine(MusicEmu emu, Map<String, Object> props) throws IOException {
+        private final int frameSize;
+
+        /**
+         * @param data nullable, the loaded file, needed to render at other sample rate than the emulator's
+         * @throws IllegalArgumentException the emulator cannot render at the sample rate of the format
+         */
+        public EmuInputStream(MusicEmu emu, ByteBuffer data, AudioFormat format, Map<String, Object> props) throws IOException {
             this.emu = emu;
-logger.log(Level.DEBUG, "engine: " + emu.getClass().getName());
+            int sampleRate = (int) format.getSampleRate();
+            if (sampleRate != emu.sampleRate()) {
+                if (data == null)
+                    throw new IllegalArgumentException("unsupported sample rate: " + sampleRate);
+                // rendered at the rate directly, instead of resampling later
+                emu.setSampleRate(sampleRate);
+                emu.loadFile(data);
+            }
+            emu.setMono(format.getChannels() == 1);
+            isFloat = PCM_FLOAT.equals(format.getEncoding());
+            order = format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            frameSize = format.getFrameSize();
+logger.log(Level.DEBUG, "engine: " + emu.getClass().getName() + ", " + emu.sampleRate() + "Hz, " + emu.channelCount() + "ch");
             int track = 1;
             try {
                 track = (int) props.get("track");
@@ -67,36 +127,39 @@ logger.log(Level.DEBUG, "engine: " + emu.getClass().getName());
             } catch (Exception e) {
 logger.log(Level.WARNING, "wrong props::track: " + e.toString());
             }
-            emu.startTrack(track);
+            emu.startTrack(track - 1);
 logger.log(Level.DEBUG, "props: " + props  + ", track: " + track + " / " + emu.trackCount());
         }
 
+        /** @throws IOException always, a frame is more than a byte */
         @Override
-        public void initialize(OutputStream out) throws IOException {
-            if (this.out != null) {
-                throw new IOException("Already initialized");
-            } else {
-                this.out = out;
-            }
+        public int read() throws IOException {
+            throw new IOException("cannot read a fraction of a frame");
         }
 
+        /**
+         * Renders whole frames of len into b [off].
+         *
+         * @return -1 after the end of the track
+         */
         @Override
-        public void execute() throws IOException {
-            if (out == null) {
-                throw new IOException("Not yet initialized");
-            } else {
-                if (!emu.trackEnded()) {
-                    int count = emu.play(buf, buf.length / 2);
+        public int read(byte[] b, int off, int len) throws IOException {
+            java.util.Objects.checkFromIndexSize(off, len, b.length);
+            if (emu.trackEnded())
+                return -1;
+            len -= len % frameSize;
+            int count = isFloat ? emu.playFloat(b, off, len / 4, order) * 4 : emu.play(b, off, len / 2, order) * 2;
 logger.log(Level.TRACE, "count: " + count);
-                    out.write(buf, 0, count * 2);
-                } else {
-                    out.close();
-                }
-            }
+            return count;
         }
 
+        /**
+         * Nothing is buffered, but rendering doesn't block either,
+         * so a block while the track plays, 0 after the end.
+         */
         @Override
-        public void finish() throws IOException {
+        public int available() throws IOException {
+            return emu.trackEnded() ? 0 : blockSize - blockSize % frameSize;
         }
     }
 }
@@ -7,12 +7,14 @@
 package vavi.sound.sampled.emu;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import javax.sound.sampled.AudioFileFormat;
@@ -21,6 +23,11 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.sound.sampled.spi.AudioFileReader;
 
+import libgme.MusicEmuFactory;
+import libgme.MusicInfo;
+import libgme.vgm.VgmEmu;
+import vavi.util.archive.Archives;
+
 import static java.lang.System.Logger.Level.DEBUG;
 import static java.lang.System.Logger.Level.TRACE;
 import static java.lang.System.getLogger;
@@ -31,6 +38,13 @@ import static javax.sound.sampled.AudioSystem.NOT_SPECIFIED;
  * Provider for emulator audio file reading services. This implementation can parse
  * the format information from emulator audio file, and can produce audio input
  * streams from files of this type.
+ * <p>
+ * The format is detected from the first bytes only, the whole file is loaded
+ * and the emulator is created when an audio input stream is obtained.
+ * Tags and the length of the track are given as properties and the frame length
+ * of the {@link AudioFileFormat}, see {@link MusicInfo#toProperties()}.
+ * VGM GD3 after the first bytes is read only from an uncompressed local file by seeking,
+ * a VGZ is not inflated for it.
  *
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 241116 nsano initial version <br>
@@ -39,17 +53,23 @@ public class EmuAudioFileReader extends AudioFileReader {
 
     private static final Logger logger = getLogger(EmuAudioFileReader.class.getName());
 
+    /** sample rate of the source format, the emulator can render at the target format's one */
+    public static final int defaultSampleRate = 44100;
+
+    /** bytes read to detect the format, enough for magics in a compressed file */
+    static final int probeSize = 4096;
+
     @Override
     public AudioFileFormat getAudioFileFormat(File file) throws UnsupportedAudioFileException, IOException {
         try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
-            return getAudioFileFormat(inputStream, (int) file.length());
+            return getAudioFileFormat(inputStream, (int) file.length(), file.toPath());
         }
     }
 
     @Override
     public AudioFileFormat getAudioFileFormat(URL url) throws UnsupportedAudioFileException, IOException {
         try (InputStream inputStream = new BufferedInputStream(url.openStream())) {
-            return getAudioFileFormat(inputStream);
+            return getAudioFileFormat(inputStream, NOT_SPECIFIED, null);
         }
     }
 
@@ -63,8 +83,10 @@ public class EmuAudioFileReader extends AudioFileReader {
 
     /**
      * Return the AudioFileFormat from the given InputStream. Implementation.
+     * Only the first {@link #probeSize} bytes are read, the stream is reset,
+     * so tags after them (VGM GD3 of a large file) are not included.
      *
-     * @param bitStream input to decode
+     * @param bitStream input to decode, mark must be supported
      * @param mediaLength unused
      * @return an AudioInputStream object based on the audio file data contained
      * in the input stream.
@@ -73,39 +95,76 @@ public class EmuAudioFileReader extends AudioFileReader {
      * @throws IOException                   if an I/O exception occurs.
      */
     protected static AudioFileFormat getAudioFileFormat(InputStream bitStream, int mediaLength) throws UnsupportedAudioFileException, IOException {
+        return getAudioFileFormat(bitStream, mediaLength, null);
+    }
+
+    /**
+     * @param path nullable, the file of bitStream, tags after the first bytes are read from it
+     *             by seeking if it's not compressed, a compressed one is not inflated for them
+     */
+    private static AudioFileFormat getAudioFileFormat(InputStream bitStream, int mediaLength, Path path) throws UnsupportedAudioFileException, IOException {
         if (Boolean.parseBoolean(System.getProperty("vavi.sound.sampled.emu.off", "false"))) {
 logger.log(DEBUG, "off by system property");
             throw new UnsupportedAudioFileException("off by system property");
         }
 logger.log(DEBUG, "enter: available: " + bitStream.available());
-        EmuAudioManager manager = new EmuAudioManager(44100);
-        AudioFormat.Encoding encoding;
-        float samplingRate;
-        String emu;
+        bitStream.mark(probeSize);
+        byte[] head;
         try {
-            manager.loadFile(bitStream);
+            head = bitStream.readNBytes(probeSize);
+        } finally {
+            bitStream.reset();
+        }
+
+        InputStream in = Archives.getInputStream(new ByteArrayInputStream(head));
+        boolean compressed = EmuAudioManager.isCompressed(in);
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        MusicEmuFactory factory = MusicEmuFactory.of(in);
+        if (factory == null) {
+logger.log(DEBUG, "error exit: available: " + bitStream.available());
+            throw new UnsupportedAudioFileException("unsupported file");
+        }
 
-            emu = manager.getEmu().getClass().getSimpleName().replace("Emu", "");
+        String emu = factory.type().getSimpleName().replace("Emu", "");
+        AudioFormat.Encoding encoding;
+        try {
             encoding = EmuEncoding.valueOf(emu);
-            samplingRate = manager.getSampleRate();
         } catch (IllegalArgumentException e) {
-logger.log(DEBUG, "error exit: available: " + bitStream.available());
 logger.log(TRACE, e.getMessage(), e);
             throw (UnsupportedAudioFileException) new UnsupportedAudioFileException().initCause(e);
         }
-        AudioFileFormat.Type type = EmuFileFormatType.valueOf(emu, manager.isCompressed());
+        AudioFileFormat.Type type = EmuFileFormatType.valueOf(emu, compressed);
 logger.log(TRACE, "type: " + type);
-        Map<String, Object> props = new HashMap<>();
-        props.put("emu", manager.getEmu());
-        AudioFormat format = new AudioFormat(encoding, samplingRate, NOT_SPECIFIED, 2, NOT_SPECIFIED, NOT_SPECIFIED, true, props);
-        return new AudioFileFormat(type, format, NOT_SPECIFIED);
+        int samplingRate = sampleRate();
+        AudioFormat format = new AudioFormat(encoding, samplingRate, NOT_SPECIFIED, 2, NOT_SPECIFIED, NOT_SPECIFIED, true, new HashMap<>());
+
+        MusicInfo info = MusicInfo.read(in);
+        if (info != null && path != null && !compressed && factory.type() == VgmEmu.class) {
+            // GD3 at the end of the file, skipped to by seeking
+            try (InputStream is = Files.newInputStream(path)) {
+                info = MusicInfo.read(is);
+            }
+        }
+        if (info == null) {
+            return new AudioFileFormat(type, format, NOT_SPECIFIED);
+        }
+logger.log(TRACE, "info: " + info);
+        long frameLength = info.frameLength(samplingRate);
+        return new AudioFileFormat(type, format, frameLength < 0 || frameLength > Integer.MAX_VALUE ? NOT_SPECIFIED : (int) frameLength, info.toProperties());
+    }
+
+    /** sample rate the emulator renders at, unless the target format specifies */
+    private static int sampleRate() {
+        return Integer.getInteger("vavi.sound.sampled.emu.sampleRate", defaultSampleRate);
     }
 
     @Override
     public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
         InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()));
         try {
-            return getAudioInputStream(inputStream, (int) file.length());
+            return getAudioInputStream(inputStream, (int) file.length(), file.toPath());
         } catch (UnsupportedAudioFileException | IOException e) {
             inputStream.close();
             throw e;
@@ -133,7 +192,7 @@ logger.log(TRACE, "type: " + type);
 
     /**
      * Obtains an audio input stream from the input stream provided. The stream
-     * must point to valid audio file data.
+     * must point to valid audio file data. The whole file is loaded into an emulator.
      *
      * @param inputStream the input stream from which the AudioInputStream
      *                    should be constructed.
@@ -145,7 +204,31 @@ logger.log(TRACE, "type: " + type);
      * @throws IOException                   if an I/O exception occurs.
      */
     protected static AudioInputStream getAudioInputStream(InputStream inputStream, int mediaLength) throws UnsupportedAudioFileException, IOException {
-        AudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, mediaLength);
-        return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
+        return getAudioInputStream(inputStream, mediaLength, null);
+    }
+
+    /**
+     * @param path nullable, a local file of inputStream, it's mapped instead of read
+     */
+    private static AudioInputStream getAudioInputStream(InputStream inputStream, int mediaLength, Path path) throws UnsupportedAudioFileException, IOException {
+        AudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, mediaLength, path);
+        EmuAudioManager manager = new EmuAudioManager(sampleRate());
+        try {
+            if (path != null) {
+                manager.loadFile(path);
+            } else {
+                manager.loadFile(inputStream);
+            }
+        } catch (IllegalArgumentException e) {
+logger.log(TRACE, e.getMessage(), e);
+            throw (UnsupportedAudioFileException) new UnsupportedAudioFileException().initCause(e);
+        }
+        AudioFormat probed = audioFileFormat.getFormat();
+        Map<String, Object> props = new HashMap<>(probed.properties());
+        props.put("emu", manager.getEmu());
+        props.put("data", manager.getData());
+        AudioFormat format = new AudioFormat(probed.getEncoding(), manager.getSampleRate(), NOT_SPECIFIED, 2, NOT_SPECIFIED, NOT_SPECIFIED, true, props);
+        // the file itself is not in frames
+        return new AudioInputStream(inputStream, format, NOT_SPECIFIED);
     }
 }
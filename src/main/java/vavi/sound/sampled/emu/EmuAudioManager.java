@@ -11,6 +11,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -18,6 +21,7 @@ import java.util.Scanner;
 
 import libgme.EmuPlayer;
 import libgme.MusicEmu;
+import libgme.MusicEmuFactory;
 import libgme.VGMPlayer;
 import libgme.util.DataReader;
 import vavi.util.archive.Archives;
@@ -38,6 +42,7 @@ public class EmuAudioManager extends EmuPlayer {
     private final int sampleRate;
     private int actualSampleRate;
     private InputStream loadedStream = null;
+    private ByteBuffer data;
 
     public EmuAudioManager(int sampleRate) {
         this.sampleRate = sampleRate;
@@ -48,6 +53,38 @@ public class EmuAudioManager extends EmuPlayer {
         return this.actualSampleRate;
     }
 
+    /** the loaded file, uncompressed, mapped if loaded by {@link #loadFile(Path)} */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Maps a plain music file into memory instead of reading it,
+     * archived or compressed one is read by {@link #loadFile(InputStream)}.
+     *
+     * @throws IllegalArgumentException invalid file
+     */
+    public void loadFile(Path path) throws IOException {
+        ByteBuffer data = DataReader.map(path);
+        MusicEmuFactory factory = MusicEmuFactory.of(data);
+        if (factory == null) {
+logger.log(Level.TRACE, "not a plain music file: " + path);
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+                loadFile(is);
+            }
+            return;
+        }
+
+        MusicEmu emu = factory.create();
+        actualSampleRate = emu.setSampleRate(sampleRate);
+        emu.loadFile(data);
+        this.data = data;
+        loadedStream = null;
+
+        // now that new emulator is ready, replace old one
+        setEmu(emu, actualSampleRate);
+    }
+
     /**
      * @param is mark must be supported
      * @throws IllegalArgumentException invalid file
@@ -66,7 +103,8 @@ logger.log(Level.TRACE, "input stream A: " + is.getClass().getName() + ", " + is
         if (emu == null)
             throw new IllegalArgumentException("unsupported file");
         actualSampleRate = emu.setSampleRate(sampleRate);
-        emu.loadFile(DataReader.loadData(in));
+        data = ByteBuffer.wrap(DataReader.loadData(in));
+        emu.loadFile(data);
 
         // now that new emulator is ready, replace old one
         setEmu(emu, actualSampleRate);
@@ -77,31 +115,9 @@ logger.log(Level.TRACE, "input stream A: " + is.getClass().getName() + ", " + is
      * @return nullable
      */
     private static MusicEmu createEmu(InputStream is) {
-        if (!is.markSupported()) {
-            throw new IllegalArgumentException("stream is not supported mark: " + is);
-        }
-
-        for (MusicEmu musicEmu : serviceLoader) {
-            try {
-logger.log(Level.TRACE, musicEmu + ": " + is.available());
-                is.mark(musicEmu.getMagic().length());
-
-                if (musicEmu.isSupported(is)) {
-                    return musicEmu;
-                }
-            } catch (IOException e) {
-logger.log(Level.TRACE, musicEmu + ": " + e);
-            } finally {
-                try {
-                    is.reset();
-logger.log(Level.TRACE, musicEmu + ": " + is.available());
-                } catch (IOException e) {
-                    throw new IllegalStateException(e);
-                }
-            }
-        }
-
-        return null;
+        MusicEmuFactory factory = MusicEmuFactory.of(is);
+logger.log(Level.TRACE, "factory: " + factory);
+        return factory != null ? factory.create() : null;
     }
 
     private static final String[] compressedStream;
@@ -118,7 +134,12 @@ logger.log(Level.TRACE, musicEmu + ": " + is.available());
     }
 
     public boolean isCompressed() {
-logger.log(Level.TRACE, Arrays.toString(compressedStream) + ", " + loadedStream.getClass().getName());
-        return Arrays.stream(compressedStream).anyMatch(c -> loadedStream.getClass().getName().equals(c));
+        return loadedStream != null && isCompressed(loadedStream);
+    }
+
+    /** @param in returned by {@link Archives#getInputStream(InputStream)} */
+    static boolean isCompressed(InputStream in) {
+logger.log(Level.TRACE, Arrays.toString(compressedStream) + ", " + in.getClass().getName());
+        return Arrays.stream(compressedStream).anyMatch(c -> in.getClass().getName().equals(c));
     }
 }
@@ -7,13 +7,17 @@
 package vavi.sound.sampled.emu;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioFormat.Encoding;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.spi.FormatConversionProvider;
 
+import static javax.sound.sampled.AudioFormat.Encoding.PCM_FLOAT;
 import static javax.sound.sampled.AudioFormat.Encoding.PCM_SIGNED;
 import static javax.sound.sampled.AudioSystem.NOT_SPECIFIED;
 import static vavi.sound.sampled.emu.EmuEncoding.encodings;
@@ -35,7 +39,7 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
 
     @Override
     public AudioFormat.Encoding[] getTargetEncodings() {
-        return Stream.concat(Arrays.stream(encodings), Stream.of(PCM_SIGNED))
+        return Stream.concat(Arrays.stream(encodings), Stream.of(PCM_SIGNED, PCM_FLOAT))
                 .toArray(Encoding[]::new);
     }
 
@@ -44,7 +48,7 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
         if (sourceFormat.getEncoding().equals(PCM_SIGNED)) {
             return Arrays.stream(encodings).toArray(Encoding[]::new);
         } else if (sourceFormat.getEncoding() instanceof EmuEncoding) {
-            return new AudioFormat.Encoding[] {PCM_SIGNED};
+            return new AudioFormat.Encoding[] {PCM_SIGNED, PCM_FLOAT};
         } else {
             return new AudioFormat.Encoding[0];
         }
@@ -69,14 +73,16 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
                                 true)                        // little endian
                 };
             }
-        } else if (sourceFormat.getEncoding() instanceof EmuEncoding && targetEncoding.equals(PCM_SIGNED)) {
-            return new AudioFormat[] {
-                    new AudioFormat(sourceFormat.getSampleRate(),
-                            16,           // sample size in bits
-                            sourceFormat.getChannels(),
-                            true,                 // signed
-                            true)                        // little endian (for PCM wav)
-            };
+        } else if (sourceFormat.getEncoding() instanceof EmuEncoding && isPcm(targetEncoding)) {
+            // the source one first, as the default
+            List<AudioFormat> formats = new ArrayList<>();
+            formats.add(pcm(targetEncoding, sourceFormat.getSampleRate(), sourceFormat.getChannels(), true));
+            // the emulator renders at any rate, stereo or mono downmixed
+            for (int channels = 2; channels > 0; channels--) {
+                formats.add(pcm(targetEncoding, NOT_SPECIFIED, channels, true));
+                formats.add(pcm(targetEncoding, NOT_SPECIFIED, channels, false));
+            }
+            return formats.toArray(AudioFormat[]::new);
         } else {
             return new AudioFormat[0];
         }
@@ -91,7 +97,7 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
                 AudioFormat targetFormat = formats[0];
                 if (sourceFormat.equals(targetFormat)) {
                     return sourceStream;
-                } else if (sourceFormat.getEncoding() instanceof EmuEncoding && targetFormat.getEncoding().equals(PCM_SIGNED)) {
+                } else if (sourceFormat.getEncoding() instanceof EmuEncoding && isPcm(targetFormat.getEncoding())) {
                     try {
                         return new Emu2PcmAudioInputStream(sourceFormat, targetFormat, NOT_SPECIFIED, targetFormat.properties());
                     } catch (IOException e) {
@@ -119,9 +125,14 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
                 if (sourceFormat.equals(targetFormat)) {
                     return sourceStream;
                 } else if (sourceFormat.getEncoding() instanceof EmuEncoding &&
-                        targetFormat.getEncoding().equals(PCM_SIGNED)) {
+                        isPcm(targetFormat.getEncoding())) {
                     try {
-                        return new Emu2PcmAudioInputStream(sourceFormat, targetFormat, NOT_SPECIFIED, targetFormat.properties());
+                        AudioFormat format = pcm(targetFormat.getEncoding(),
+                                targetFormat.getSampleRate() == NOT_SPECIFIED ? sourceFormat.getSampleRate() : targetFormat.getSampleRate(),
+                                targetFormat.getChannels() == NOT_SPECIFIED ? sourceFormat.getChannels() : targetFormat.getChannels(),
+                                targetFormat.isBigEndian(),
+                                targetFormat.properties());
+                        return new Emu2PcmAudioInputStream(sourceFormat, format, NOT_SPECIFIED, targetFormat.properties());
                     } catch (IOException e) {
                         throw new IllegalStateException(e);
                     }
@@ -137,4 +148,27 @@ public class EmuFormatConversionProvider extends FormatConversionProvider {
             throw new IllegalArgumentException("conversion not supported");
         }
     }
+
+    /** 16 bit integer or 32 bit float */
+    private static boolean isPcm(Encoding encoding) {
+        return encoding.equals(PCM_SIGNED) || encoding.equals(PCM_FLOAT);
+    }
+
+    /** @param channels NOT_SPECIFIED is allowed */
+    private static AudioFormat pcm(Encoding encoding, float sampleRate, int channels, boolean bigEndian) {
+        return pcm(encoding, sampleRate, channels, bigEndian, Map.of());
+    }
+
+    /** 16 bit signed, or 32 bit float which is not clamped and 1.0 is the full scale of 16 bits */
+    private static AudioFormat pcm(Encoding encoding, float sampleRate, int channels, boolean bigEndian, Map<String, Object> props) {
+        int bits = encoding.equals(PCM_FLOAT) ? 32 : 16;
+        return new AudioFormat(encoding,
+                sampleRate,
+                bits,                                    // sample size in bits
+                channels,
+                channels == NOT_SPECIFIED ? NOT_SPECIFIED : bits / 8 * channels, // frame size
+                sampleRate,                              // frame rate
+                bigEndian,
+                props);
+    }
 }
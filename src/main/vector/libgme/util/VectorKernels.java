@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * {@link Kernels} by the Vector API, loaded only if {@code jdk.incubator.vector} is available.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Integer> ints = IntVector.SPECIES_PREFERRED;
+
+    /** same lane count as ints */
+    private static final VectorSpecies<Short> shorts = VectorSpecies.of(short.class, VectorShape.forBitSize(ints.vectorBitSize() / 2));
+
+    private static final VectorSpecies<Float> floats = FloatVector.SPECIES_PREFERRED;
+
+    /** for fir8, at most 16 lanes */
+    private static final VectorSpecies<Integer> fir = ints.length() > 16 ? IntVector.SPECIES_512 : ints;
+
+    VectorKernels() {
+        if (ints.length() < 4)
+            throw new UnsupportedOperationException("no simd: " + ints);
+    }
+
+    @Override
+    public void mixQuarter(short[] out, int outOff, int[] in, int inOff, int count) {
+        int i = 0;
+        for (int end = shorts.loopBound(count); i < end; i += shorts.length()) {
+            IntVector s = (IntVector) ShortVector.fromArray(shorts, out, outOff + i)
+                    .convertShape(VectorOperators.S2I, ints, 0);
+            s = s.lanewise(VectorOperators.ASHR, 2)
+                    .add(IntVector.fromArray(ints, in, inOff + i))
+                    .max(Short.MIN_VALUE)
+                    .min(Short.MAX_VALUE);
+            ((ShortVector) s.convertShape(VectorOperators.I2S, shorts, 0))
+                    .intoArray(out, outOff + i);
+        }
+        super.mixQuarter(out, outOff + i, in, inOff + i, count - i);
+    }
+
+    @Override
+    public void mixQuarter(float[] out, int outOff, int[] in, int inOff, int count, float scale) {
+        int i = 0;
+        for (int end = floats.loopBound(count); i < end; i += floats.length()) {
+            FloatVector fm = (FloatVector) IntVector.fromArray(ints, in, inOff + i)
+                    .convert(VectorOperators.I2F, 0);
+            FloatVector.fromArray(floats, out, outOff + i)
+                    .mul(0.25f)
+                    .add(fm.mul(scale))
+                    .intoArray(out, outOff + i);
+        }
+        super.mixQuarter(out, outOff + i, in, inOff + i, count - i, scale);
+    }
+
+    @Override
+    public long fir8(int[] hist, int pos, int[] taps) {
+        IntVector sum = IntVector.zero(fir);
+        for (int i = 0; i < 16; i += fir.length()) {
+            sum = sum.add(IntVector.fromArray(fir, hist, pos + i).mul(IntVector.fromArray(fir, taps, i)));
+        }
+        // odd lanes are upper halves of longs, masked reduction is much slower
+        int r = (int) sum.reinterpretAsLongs().lanewise(VectorOperators.ASHR, 32).reduceLanesToLong(VectorOperators.ADD);
+        int l = sum.reduceLanes(VectorOperators.ADD) - r;
+        return (long) l << 32 | (r & 0xffff_ffffL);
+    }
+
+    @Override
+    public String toString() {
+        return "vector: " + ints;
+    }
+}
@@ -43,8 +43,9 @@ class TestCase {
     @Property
     String vgz = "src/test/resources/test.vgm";
 
+    /** 0 is the first track */
     @Property(name = "track")
-    int track = 1;
+    int track = 0;
 
     @BeforeEach
     void setup() throws Exception {
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Synthetic music files for the tests and the benchmarks.
+ * <p>
+ * Every fixture is generated in memory, so the tests and the benchmarks run
+ * offline and don't depend on copyrighted rips. The programs are tiny but keep
+ * every sound channel of the target chip busy, which is what the render path
+ * cost depends on.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /** fixture names accepted by {@link #create(String)} */
+    public static final String NSF = "nsf";
+    public static final String GBS = "gbs";
+    public static final String SPC = "spc";
+    public static final String VGM_PSG = "vgm-psg";
+    public static final String VGM_YM2612 = "vgm-ym2612";
+
+    /** @throws IllegalArgumentException unknown fixture name */
+    public static byte[] create(String name) {
+        return switch (name) {
+            case NSF -> nsf();
+            case GBS -> gbs();
+            case SPC -> spc();
+            case VGM_PSG -> vgm(false);
+            case VGM_YM2612 -> vgm(true);
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    /** @return emulator class name for the fixture */
+    public static String emuClassName(String name) {
+        return switch (name) {
+            case NSF -> "libgme.nsf.NsfEmu";
+            case GBS -> "libgme.gbs.GbsEmu";
+            case SPC -> "libgme.spc.SpcEmu";
+            case VGM_PSG, VGM_YM2612 -> "libgme.vgm.VgmEmu";
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    /** NES: both squares, triangle and noise, play routine sweeps the pitches every frame */
+    static byte[] nsf() {
+        byte[] header = new byte[0x80];
+        put(header, 0, "NESM\u001a");
+        header[0x05] = 1; // version
+        header[0x06] = 1; // total songs
+        header[0x07] = 1; // starting song
+        putLE16(header, 0x08, 0x8000); // load
+        putLE16(header, 0x0A, 0x8000); // init
+        putLE16(header, 0x0C, 0x8060); // play
+        put(header, 0x0E, "benchmark");
+        put(header, 0x2E, "vavi-sound-emu");
+        put(header, 0x4E, "synthetic");
+        putLE16(header, 0x6E, 0x411A); // NTSC speed
+        putLE16(header, 0x78, 0x4E20); // PAL speed
+
+        byte[] code = new byte[0x80];
+        int[] init = {
+                0xA9, 0x0F, 0x8D, 0x15, 0x40, // LDA #$0F, STA $4015 ; enable channels
+                0xA9, 0xBF, 0x8D, 0x00, 0x40, // square 1: duty 2, halt, constant volume 15
+                0xA9, 0x7F, 0x8D, 0x04, 0x40, // square 2: duty 1
+                0xA9, 0x08, 0x8D, 0x01, 0x40, // no sweep
+                0xA9, 0x08, 0x8D, 0x05, 0x40,
+                0xA9, 0xFD, 0x8D, 0x02, 0x40,
+                0xA9, 0x00, 0x8D, 0x03, 0x40,
+                0xA9, 0x80, 0x8D, 0x06, 0x40,
+                0xA9, 0x00, 0x8D, 0x07, 0x40,
+                0xA9, 0xFF, 0x8D, 0x08, 0x40, // triangle: halt, linear reload
+                0xA9, 0x80, 0x8D, 0x0A, 0x40,
+                0xA9, 0x00, 0x8D, 0x0B, 0x40,
+                0xA9, 0x3F, 0x8D, 0x0C, 0x40, // noise: halt, constant volume 15
+                0xA9, 0x05, 0x8D, 0x0E, 0x40,
+                0xA9, 0x00, 0x8D, 0x0F, 0x40,
+                0x60                          // RTS
+        };
+        int[] play = {
+                0xE6, 0x00,                   // INC $00
+                0xA5, 0x00,                   // LDA $00
+                0x8D, 0x02, 0x40,             // STA $4002
+                0x8D, 0x0A, 0x40,             // STA $400A
+                0x49, 0xFF,                   // EOR #$FF
+                0x8D, 0x06, 0x40,             // STA $4006
+                0x29, 0x0F,                   // AND #$0F
+                0x8D, 0x0E, 0x40,             // STA $400E
+                0x60                          // RTS
+        };
+        put(code, 0x00, init);
+        put(code, 0x60, play);
+
+        return concat(header, code);
+    }
+
+    /** Game Boy: both squares and noise, play routine sweeps the pitches every frame */
+    static byte[] gbs() {
+        byte[] header = new byte[0x70];
+        put(header, 0, "GBS\u0001");
+        header[0x04] = 1; // total songs
+        header[0x05] = 1; // starting song
+        putLE16(header, 0x06, 0x0400); // load
+        putLE16(header, 0x08, 0x0400); // init
+        putLE16(header, 0x0A, 0x0440); // play
+        putLE16(header, 0x0C, 0xFFFE); // stack pointer
+        put(header, 0x10, "benchmark");
+        put(header, 0x30, "vavi-sound-emu");
+        put(header, 0x50, "synthetic");
+
+        byte[] code = new byte[0x80];
+        int[] init = {
+                0x3E, 0x80, 0xE0, 0x26, // LD A,$80; LDH ($26),A ; power on
+                0x3E, 0x77, 0xE0, 0x24, // master volume
+                0x3E, 0xFF, 0xE0, 0x25, // all channels to both sides
+                0x3E, 0x80, 0xE0, 0x11, // square 1: duty 50%
+                0x3E, 0xF0, 0xE0, 0x12, // volume 15, no envelope
+                0x3E, 0x00, 0xE0, 0x13,
+                0x3E, 0x86, 0xE0, 0x14, // trigger
+                0x3E, 0x40, 0xE0, 0x16, // square 2: duty 25%
+                0x3E, 0xF0, 0xE0, 0x17,
+                0x3E, 0x80, 0xE0, 0x18,
+                0x3E, 0x85, 0xE0, 0x19,
+                0x3E, 0xF0, 0xE0, 0x21, // noise
+                0x3E, 0x34, 0xE0, 0x22,
+                0x3E, 0x80, 0xE0, 0x23,
+                0xC9                    // RET
+        };
+        int[] play = {
+                0xF0, 0x80,             // LDH A,($80)
+                0x3C,                   // INC A
+                0xE0, 0x80,             // LDH ($80),A
+                0xE0, 0x13,             // LDH ($13),A
+                0x2F,                   // CPL
+                0xE0, 0x18,             // LDH ($18),A
+                0xE6, 0x07,             // AND $07
+                0xE0, 0x22,             // LDH ($22),A
+                0xC9                    // RET
+        };
+        put(code, 0x00, init);
+        put(code, 0x40, play);
+
+        return concat(header, code);
+    }
+
+    /** SNES: all eight voices looping a square BRR sample, CPU keeps writing pitch */
+    static byte[] spc() {
+        byte[] spc = new byte[0x10200];
+        put(spc, 0, "SNES-SPC700 Sound File Data v0.30");
+        spc[0x21] = 0x1a;
+        spc[0x22] = 0x1a;
+        spc[0x23] = 0x1b; // no ID666
+        spc[0x24] = 30; // minor version
+        putLE16(spc, 0x25, 0x0200); // PC
+        spc[0x2A] = 0x02; // PSW
+        spc[0x2B] = (byte) 0xEF; // SP
+
+        int ram = 0x100;
+        // SMP registers: timers and IPL ROM off
+        spc[ram + 0xF1] = 0x00;
+
+        // CPU: loop writing voice pitch through $F2/$F3
+        int[] code = {
+                0x8F, 0x02, 0xF2, // MOV $F2,#$02
+                0xAB, 0x00,       // INC $00
+                0xE4, 0x00,       // MOV A,$00
+                0xC4, 0xF3,       // MOV $F3,A
+                0x8F, 0x12, 0xF2, // MOV $F2,#$12
+                0xC4, 0xF3,       // MOV $F3,A
+                0x2F, 0xF3        // BRA $0203
+        };
+        put(spc, ram + 0x0200, code);
+
+        // sample directory at $0300, one entry looping on itself
+        putLE16(spc, ram + 0x0300, 0x0400);
+        putLE16(spc, ram + 0x0302, 0x0400);
+        // BRR block: range 11, filter 0, end + loop, square wave
+        int[] brr = {0xB3, 0x77, 0x77, 0x77, 0x77, 0x99, 0x99, 0x99, 0x99};
+        put(spc, ram + 0x0400, brr);
+
+        int dsp = 0x10100;
+        for (int v = 0; v < 8; v++) {
+            int r = dsp + (v << 4);
+            spc[r] = 0x20; // VOLL
+            spc[r + 1] = (byte) (0x20 - v * 4); // VOLR
+            putLE16(spc, r + 2, 0x0400 + v * 0x0180); // PITCH
+            spc[r + 4] = 0x00; // SRCN
+            spc[r + 5] = 0x00; // ADSR off, use GAIN
+            spc[r + 7] = 0x7F; // direct GAIN
+        }
+        spc[dsp + 0x0C] = 0x7F; // MVOLL
+        spc[dsp + 0x1C] = 0x7F; // MVOLR
+        spc[dsp + 0x4C] = (byte) 0xFF; // KON
+        spc[dsp + 0x6C] = 0x20; // FLG: echo write off
+        spc[dsp + 0x5D] = 0x03; // DIR
+        spc[dsp + 0x6D] = 0x60; // ESA
+        spc[dsp + 0x7F] = 0x7F; // FIR 0
+
+        return spc;
+    }
+
+    static final int vgmHeaderSize = 0x40;
+
+    /** Sega: tone + noise on the PSG, optionally six FM channels with LFO on the YM2612 */
+    static byte[] vgm(boolean fm) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        if (fm) {
+            // LFO on, so the LFO path of the FM core is exercised
+            ym(data, 0, 0x22, 0x0B);
+            ym(data, 0, 0x27, 0x00);
+            ym(data, 0, 0x2B, 0x00); // DAC off
+            for (int port = 0; port < 2; port++) {
+                for (int ch = 0; ch < 3; ch++) {
+                    for (int op = 0; op < 4; op++) {
+                        int r = (op << 2) + ch;
+                        ym(data, port, 0x30 + r, 0x71 - op * 0x10); // DT/MUL
+                        ym(data, port, 0x40 + r, op == 3 ? 0x08 : 0x28); // TL
+                        ym(data, port, 0x50 + r, 0x1F); // KS/AR
+                        ym(data, port, 0x60 + r, 0x85); // AM/D1R
+                        ym(data, port, 0x70 + r, 0x02); // D2R
+                        ym(data, port, 0x80 + r, 0x2F); // SL/RR
+                        ym(data, port, 0x90 + r, 0x00); // SSG-EG
+                    }
+                    ym(data, port, 0xB0 + ch, 0x30 | (port * 3 + ch) % 8); // FB/ALG
+                    ym(data, port, 0xB4 + ch, 0xC0 | 0x11); // L/R/AMS/FMS
+                }
+            }
+        }
+
+        int loop = data.size();
+        int samples = 0;
+        int[] chSel = {0, 1, 2, 4, 5, 6};
+        for (int note = 0; note < 64; note++) {
+            // PSG: three tones and noise
+            for (int ch = 0; ch < 3; ch++) {
+                int period = 0x100 + ((note * 37 + ch * 101) & 0x1FF);
+                psg(data, 0x80 | ch << 5 | (period & 0x0F));
+                psg(data, (period >> 4) & 0x3F);
+                psg(data, 0x90 | ch << 5 | (note + ch) & 0x07);
+            }
+            psg(data, 0xE0 | note & 0x07);
+            psg(data, 0xF0 | 0x04);
+
+            if (fm) {
+                for (int i = 0; i < 6; i++) {
+                    int port = i / 3;
+                    int ch = i % 3;
+                    int fnum = 0x200 + ((note * 53 + i * 71) & 0x1FF);
+                    int block = 3 + (note + i) % 3;
+                    ym(data, 0, 0x28, chSel[i]); // key off
+                    ym(data, port, 0xA4 + ch, block << 3 | fnum >> 8);
+                    ym(data, port, 0xA0 + ch, fnum & 0xFF);
+                    ym(data, 0, 0x28, 0xF0 | chSel[i]); // key on
+                }
+            }
+
+            // three 1/60 sec frames per note
+            for (int i = 0; i < 3; i++) {
+                data.write(0x62);
+                samples += 735;
+            }
+        }
+        data.write(0x66); // end
+
+        byte[] body = data.toByteArray();
+        byte[] header = new byte[vgmHeaderSize];
+        put(header, 0, "Vgm ");
+        putLE32(header, 0x04, vgmHeaderSize + body.length - 0x04); // EOF offset
+        putLE32(header, 0x08, 0x150); // version
+        putLE32(header, 0x0C, 3579545); // SN76489 clock
+        putLE32(header, 0x18, samples); // total samples
+        putLE32(header, 0x1C, vgmHeaderSize + loop - 0x1C); // loop offset
+        putLE32(header, 0x20, samples); // loop samples
+        putLE32(header, 0x24, 60); // rate
+        putLE16(header, 0x28, 0x0009); // SN76489 feedback
+        header[0x2A] = 16; // SN76489 shift register width
+        putLE32(header, 0x2C, fm ? 7670453 : 0); // YM2612 clock
+        putLE32(header, 0x34, vgmHeaderSize - 0x34); // data offset
+
+        return concat(header, body);
+    }
+
+    private static void psg(ByteArrayOutputStream out, int data) {
+        out.write(0x50);
+        out.write(data);
+    }
+
+    private static void ym(ByteArrayOutputStream out, int port, int addr, int data) {
+        out.write(0x52 + port);
+        out.write(addr);
+        out.write(data);
+    }
+
+    private static void put(byte[] out, int pos, String s) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(b, 0, out, pos, b.length);
+    }
+
+    private static void put(byte[] out, int pos, int[] in) {
+        for (int i = 0; i < in.length; i++) {
+            out[pos + i] = (byte) in[i];
+        }
+    }
+
+    private static void putLE16(byte[] out, int pos, int v) {
+        out[pos] = (byte) v;
+        out[pos + 1] = (byte) (v >> 8);
+    }
+
+    private static void putLE32(byte[] out, int pos, int v) {
+        putLE16(out, pos, v);
+        putLE16(out, pos + 2, v >> 16);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
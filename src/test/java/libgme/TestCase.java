@@ -0,0 +1,1033 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libgme;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import libgme.spc.SpcEmu;
+import libgme.util.DataReader;
+import libgme.util.Kernels;
+import libgme.util.Resampler;
+import libgme.vgm.VgmEmu;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * TestCase.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class TestCase {
+
+    static final String vgm = "src/test/resources/test.vgm";
+
+    byte[] data;
+
+    @BeforeEach
+    void setup() throws Exception {
+        data = Files.readAllBytes(Path.of(vgm));
+    }
+
+    static MusicEmu load(byte[] data) {
+        MusicEmu emu = new VgmEmu();
+        emu.setSampleRate(44100);
+        emu.loadFile(data);
+        return emu;
+    }
+
+    @Test
+    @DisplayName("renderer output is same as play()")
+    void test1() throws Exception {
+        int count = 44100 * 2 * 3;
+
+        MusicEmu emu = load(data);
+        emu.startTrack(0);
+        byte[] expected = new byte[count * 2];
+        byte[] buf = new byte[8192 * 2];
+        for (int i = 0; i < count; ) {
+            int n = emu.play(buf, Math.min(8192, count - i));
+            System.arraycopy(buf, 0, expected, i * 2, n * 2);
+            i += n;
+        }
+
+        Renderer renderer = new Renderer(load(data));
+        renderer.startTrack(0, 0, 0);
+        ShortBuffer sb = ShortBuffer.allocate(count);
+        assertEquals(count, renderer.render(sb));
+        assertEquals(count, renderer.position());
+
+        renderer.startTrack(0, 0, 0);
+        ByteBuffer bb = ByteBuffer.allocate(count * 2).order(ByteOrder.BIG_ENDIAN);
+        assertEquals(count * 2, renderer.render(bb));
+        assertArrayEquals(expected, bb.array());
+
+        ByteBuffer actual = ByteBuffer.allocate(count * 2);
+        actual.asShortBuffer().put(sb.flip());
+        assertArrayEquals(expected, actual.array());
+
+        // heap buffer at an offset of its array, direct one through the block
+        for (ShortBuffer out : List.of(ShortBuffer.allocate(count + 10).position(10).slice(), ByteBuffer.allocateDirect(count * 2).asShortBuffer())) {
+            renderer.startTrack(0, 0, 0);
+            assertEquals(count, renderer.render(out));
+            actual.clear();
+            actual.asShortBuffer().put(out.flip());
+            assertArrayEquals(expected, actual.array());
+        }
+    }
+
+    @Test
+    @DisplayName("renderer stops at length + fade")
+    void test2() throws Exception {
+        Renderer renderer = new Renderer(load(data), 4096);
+        renderer.startTrack(0, 2, 1);
+        ByteBuffer bb = ByteBuffer.allocate(44100 * 4 * 10).order(ByteOrder.LITTLE_ENDIAN);
+        int n = renderer.render(bb);
+        assertTrue(n > 0);
+        assertTrue(n <= 44100 * 4 * 3);
+        assertTrue(renderer.isEnded());
+        assertEquals(-1, renderer.render(bb));
+    }
+
+    @Test
+    @DisplayName("batch renderer renders jobs independently")
+    void test3() throws Exception {
+        List<BatchRenderer.Job> jobs = Collections.nCopies(8, new BatchRenderer.Job(Path.of(vgm), 0, 1, 0));
+        try (BatchRenderer batch = new BatchRenderer(44100, 4)) {
+            List<BatchRenderer.Result> results = batch.render(jobs, job -> Channels.newChannel(OutputStream.nullOutputStream()), null);
+            assertEquals(jobs.size(), results.size());
+            for (BatchRenderer.Result result : results) {
+                assertNull(result.error());
+                assertEquals(44100 * 2, result.samples());
+                assertTrue(result.realtime() > 0);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("factory detects format once and creates fresh instances")
+    void test4() throws Exception {
+        MusicEmuFactory factory = MusicEmuFactory.of(new BufferedInputStream(new ByteArrayInputStream(data)));
+        assertEquals(VgmEmu.class, factory.type());
+        assertSame(factory, MusicEmuFactory.of(data));
+        assertSame(factory, MusicEmuFactory.ofName("TEST.VGZ"));
+        assertTrue(MusicEmuFactory.isGunzipNeeded("TEST.VGZ"));
+        assertNull(MusicEmuFactory.of(new byte[16]));
+
+        MusicEmu emu1 = factory.create();
+        MusicEmu emu2 = factory.create();
+        assertNotSame(emu1, emu2);
+    }
+
+    static byte[] play(MusicEmu emu, int count) {
+        byte[] out = new byte[count * 2];
+        emu.startTrack(0);
+        emu.play(out, count);
+        return out;
+    }
+
+    @Test
+    @DisplayName("pooled emulator plays same as a new one")
+    void test5() throws Exception {
+        int count = 44100 * 2;
+        byte[] expected = play(load(data), count);
+
+        MusicEmuPool pool = new MusicEmuPool(1);
+        MusicEmu emu1 = pool.acquire(data, 44100);
+        play(emu1, count * 3);
+        emu1.setEndlessLoopFlag(true);
+        pool.release(emu1);
+        assertEquals(1, pool.idleCount());
+
+        MusicEmu emu2 = pool.acquire(data, 44100);
+        assertSame(emu1, emu2);
+        assertFalse(emu2.isEndlessLoopFlag());
+        assertArrayEquals(expected, play(emu2, count));
+
+        MusicEmu emu3 = pool.acquire(data, 44100);
+        assertNotSame(emu2, emu3);
+        pool.release(emu2);
+        pool.release(emu3);
+        assertEquals(1, pool.idleCount());
+        assertThrows(IllegalArgumentException.class, () -> pool.release(emu3));
+
+        byte[] spc = Fixtures.create(Fixtures.SPC);
+        SpcEmu spc1 = (SpcEmu) pool.acquire(spc, 48000);
+        spc1.setResamplerWidth(32);
+        pool.release(spc1);
+        SpcEmu spc2 = (SpcEmu) pool.acquire(spc, 48000);
+        assertSame(spc1, spc2);
+        assertEquals(Resampler.defaultWidth, spc2.resamplerWidth());
+
+        VgmEmu vgm1 = (VgmEmu) pool.acquire(data, 44100);
+        vgm1.setPrecompiled(!vgm1.isPrecompiled());
+        pool.release(vgm1);
+        VgmEmu vgm2 = (VgmEmu) pool.acquire(data, 44100);
+        assertSame(vgm1, vgm2);
+        assertEquals(Boolean.getBoolean("libgme.vgm.precompile"), vgm2.isPrecompiled());
+    }
+
+    @Test
+    @DisplayName("skip/seek gives almost same output as playing through")
+    void test6() throws Exception {
+        int skip = 44100 * 2 * 20;
+        int count = 44100 * 2;
+
+        MusicEmu emu1 = load(data);
+        emu1.startTrack(0);
+        byte[] buf = new byte[8192 * 2];
+        for (int i = 0; i < skip; ) {
+            i += emu1.play(buf, Math.min(8192, skip - i));
+        }
+        byte[] expected = new byte[count * 2];
+        emu1.play(expected, count);
+
+        MusicEmu emu2 = load(data);
+        emu2.startTrack(0);
+        assertEquals(skip, emu2.skip(skip));
+        assertEquals(skip, emu2.position());
+        byte[] actual = new byte[count * 2];
+        emu2.play(actual, count);
+        assertSimilar(expected, actual);
+
+        emu2.seek(skip);
+        assertEquals(skip, emu2.position());
+        emu2.play(actual, count);
+        assertSimilar(expected, actual);
+    }
+
+    @Test
+    @DisplayName("restored state plays same as the original")
+    void test7() throws Exception {
+        int count = 44100 * 2;
+
+        MusicEmu emu1 = load(data);
+        play(emu1, count * 5);
+        ByteBuffer state = ByteBuffer.allocate(0x10000);
+        emu1.saveState_(state);
+        byte[] expected = new byte[count * 2];
+        emu1.play(expected, count);
+
+        MusicEmu emu2 = load(data);
+        emu2.startTrack(0);
+        emu2.restoreState_(state.flip());
+        assertFalse(state.hasRemaining());
+        byte[] actual = new byte[count * 2];
+        emu2.play(actual, count);
+        assertArrayEquals(expected, actual);
+
+        SeekIndex index = new SeekIndex(load(data), 2);
+        index.startTrack(0);
+        byte[] buf = new byte[count * 12 * 2];
+        index.play(buf, count * 12);
+        assertEquals(7, index.size());
+        int position = count * 3 + 1234;
+        index.seek(position);
+        assertEquals(position, index.emu().position());
+        index.emu().play(actual, count);
+        assertSimilar(Arrays.copyOfRange(buf, position * 2, (position + count) * 2), actual);
+    }
+
+    @Test
+    @DisplayName("saved state resumes on another instance")
+    void test8() throws Exception {
+        int count = 44100 * 2;
+
+        MusicEmu emu1 = load(data);
+        play(emu1, count * 5 + 100);
+        emu1.setFade(10, 2);
+        ByteBuffer state = ByteBuffer.allocate(0x10000).order(ByteOrder.LITTLE_ENDIAN);
+        emu1.saveState(state);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, state.order());
+        byte[] expected = new byte[count * 2];
+        emu1.play(expected, count);
+
+        MusicEmu emu2 = load(data);
+        emu2.restoreState(state.flip());
+        assertFalse(state.hasRemaining());
+        assertEquals(emu1.position() - count, emu2.position());
+        byte[] actual = new byte[count * 2];
+        emu2.play(actual, count);
+        assertArrayEquals(expected, actual);
+
+        MusicEmu emu3 = new VgmEmu();
+        emu3.setSampleRate(22050);
+        emu3.loadFile(data);
+        assertThrows(IllegalArgumentException.class, () -> emu3.restoreState(state.rewind()));
+
+        byte[] other = data.clone();
+        other[0x14] ^= 1; // gd3 offset, in the header identifying the file
+        assertThrows(IllegalArgumentException.class, () -> load(other).restoreState(state.rewind()));
+
+        byte[] commands = data.clone();
+        commands[0x1000] ^= 1; // past the header, in the first commands identifying the file
+        assertThrows(IllegalArgumentException.class, () -> load(commands).restoreState(state.rewind()));
+
+        assertThrows(IllegalArgumentException.class, () -> load(data).restoreState(ByteBuffer.wrap(new byte[16])));
+    }
+
+    @Test
+    @DisplayName("track ends by silence or loop")
+    void test9() throws Exception {
+        MusicEmu emu1 = load(data);
+        emu1.startTrack(0);
+        emu1.setSilenceDetection(1000, Short.MAX_VALUE); // everything is silent
+        byte[] buf = new byte[4410 * 2];
+        while (!emu1.trackEnded()) {
+            emu1.play(buf, 4410);
+        }
+        assertEquals(44100 * 2, emu1.position());
+
+        MusicEmu emu2 = load(data);
+        emu2.setEndlessLoopFlag(true);
+        emu2.setLoopDetection(true);
+        emu2.startTrack(0);
+        emu2.skip(44100 * 2 * 70);
+        assertTrue(emu2.trackLooped());
+        assertFalse(emu2.trackEnded());
+
+        emu2.setEndlessLoopFlag(false);
+        emu2.startTrack(0);
+        assertFalse(emu2.trackLooped());
+        assertTrue(emu2.skip(44100 * 2 * 70) < 44100 * 2 * 70);
+        assertTrue(emu2.trackLooped());
+        assertTrue(emu2.trackEnded());
+    }
+
+    @Test
+    @DisplayName("small reads give same output as large ones")
+    void test10() throws Exception {
+        int count = 44100 * 2 * 3;
+        byte[] expected = play(load(data), count);
+
+        MusicEmu emu = load(data);
+        emu.startTrack(0);
+        byte[] actual = new byte[count * 2];
+        byte[] buf = new byte[2 * 2];
+        for (int i = 0; i < count; i += 2) {
+            emu.play(buf, 2);
+            System.arraycopy(buf, 0, actual, i * 2, 4);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    static double rms(byte[] pcm) {
+        ShortBuffer sb = ByteBuffer.wrap(pcm).asShortBuffer();
+        double sum = 0;
+        for (int i = 0; i < sb.limit(); i++) {
+            sum += sb.get(i) * (double) sb.get(i);
+        }
+        return Math.sqrt(sum / sb.limit());
+    }
+
+    @Test
+    @DisplayName("kernel width changes quality, not loudness")
+    void test11() throws Exception {
+        int count = 44100 * 2 * 2;
+        double expected = rms(play(load(data), count));
+
+        for (int taps : new int[] {2, 4, 8, 16, 24, 32}) {
+            ClassicEmu emu = (ClassicEmu) load(data);
+            emu.setKernelWidth(taps);
+            assertEquals(taps, emu.kernelWidth());
+            assertEquals(expected, rms(play(emu, count)), expected * 0.2, "taps: " + taps);
+        }
+
+        ClassicEmu emu = (ClassicEmu) load(data);
+        assertThrows(IllegalArgumentException.class, () -> emu.setKernelWidth(3));
+        assertThrows(IllegalArgumentException.class, () -> emu.setKernelWidth(34));
+    }
+
+    @Test
+    @DisplayName("mono output")
+    void test12() throws Exception {
+        int frames = 44100 * 2;
+        ShortBuffer stereo = ByteBuffer.wrap(play(load(data), frames * 2)).asShortBuffer();
+
+        MusicEmu emu = load(data);
+        emu.setMono(true);
+        assertEquals(1, emu.channelCount());
+        ShortBuffer mono = ByteBuffer.wrap(play(emu, frames)).asShortBuffer();
+        assertEquals(frames, emu.position());
+        for (int i = 0; i < frames; i++) {
+            int expected = (stereo.get(i * 2) + stereo.get(i * 2 + 1)) >> 1;
+            assertTrue(Math.abs(expected - mono.get(i)) <= 2, "at " + i);
+        }
+
+        assertEquals(1000, emu.skip(1000));
+        assertEquals(frames + 1000, emu.position());
+    }
+
+    @Test
+    @DisplayName("short output")
+    void test13() throws Exception {
+        int count = 44100 * 2;
+        ShortBuffer expected = ByteBuffer.wrap(play(load(data), count)).asShortBuffer();
+
+        MusicEmu emu = load(data);
+        emu.startTrack(0);
+        short[] actual = new short[count + 2];
+        assertEquals(count, emu.play(actual, 2, count));
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.get(i), actual[2 + i], "at " + i);
+        }
+
+        emu.startTrack(0);
+        ShortBuffer direct = ByteBuffer.allocateDirect(count * 2).asShortBuffer();
+        assertEquals(count, emu.play(direct));
+        assertEquals(expected.rewind(), direct.flip());
+    }
+
+    @Test
+    @DisplayName("float output")
+    void test14() throws Exception {
+        int count = 44100 * 2;
+        ShortBuffer expected = ByteBuffer.wrap(play(load(data), count)).asShortBuffer();
+
+        MusicEmu emu = load(data);
+        emu.startTrack(0);
+        float[] actual = new float[count];
+        assertEquals(count, emu.play(actual, 0, count));
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.get(i), actual[i] * 0x8000, 1.5, "at " + i);
+        }
+
+        emu.startTrack(0);
+        FloatBuffer direct = ByteBuffer.allocateDirect(count * 4).asFloatBuffer();
+        assertEquals(count, emu.play(direct));
+        assertEquals(FloatBuffer.wrap(actual), direct.flip());
+    }
+
+    @Test
+    @DisplayName("simd kernels")
+    void test15() throws Exception {
+        Random random = new Random(1);
+        int count = 1000;
+        int[] in = random.ints(count, -0x10000, 0x10000).toArray();
+        short[] expected = new short[count];
+        float[] expectedF = new float[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = (short) random.nextInt();
+            expectedF[i] = expected[i] / 32768f;
+        }
+        short[] actual = expected.clone();
+        float[] actualF = expectedF.clone();
+
+        // the vector one whenever the module is there, the scalar one without it
+        boolean vector = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() &&
+                Boolean.parseBoolean(System.getProperty("libgme.simd", "true"));
+        assertEquals(vector, Kernels.instance != Kernels.scalar);
+
+        Kernels.scalar.mixQuarter(expected, 1, in, 3, count - 5);
+        Kernels.instance.mixQuarter(actual, 1, in, 3, count - 5);
+        assertArrayEquals(expected, actual);
+
+        Kernels.scalar.mixQuarter(expectedF, 1, in, 3, count - 5, 1f / 0x8000);
+        Kernels.instance.mixQuarter(actualF, 1, in, 3, count - 5, 1f / 0x8000);
+        assertArrayEquals(expectedF, actualF);
+
+        int[] taps = new int[16];
+        for (int i = 0; i < 8; i++) {
+            taps[i * 2] = taps[i * 2 + 1] = (byte) random.nextInt();
+        }
+        for (int pos = 0; pos < count - 16; pos += 2) {
+            assertEquals(Kernels.scalar.fir8(in, pos, taps), Kernels.instance.fir8(in, pos, taps));
+        }
+    }
+
+    @Test
+    @DisplayName("resampler")
+    void test16() throws Exception {
+        Resampler resampler = new Resampler(32000, 44100);
+        float[] expected = resample(resampler, 1000, 4410);
+        for (int i = 100; i < 4410; i++) {
+            double sine = 0.5 * Math.sin(2 * Math.PI * 1000 * i / 44100);
+            assertEquals(sine, expected[i * 2], 0.001, "at " + i);
+            assertEquals(-sine, expected[i * 2 + 1], 0.001, "at " + i);
+        }
+
+        // same output in any size of chunks
+        resampler.clear();
+        float[] actual = new float[expected.length];
+        int t = 0;
+        for (int done = 0, n = 1; done < 4410; done += n, n = Math.min(n * 3, 4410 - done)) {
+            int frames = resampler.required(n);
+            float[] in = resampler.buffer(frames);
+            for (int i = 0; i < frames; i++, t++) {
+                in[resampler.writeOffset() + i * 2] = (float) (0.5 * Math.sin(2 * Math.PI * 1000 * t / 32000));
+                in[resampler.writeOffset() + i * 2 + 1] = -in[resampler.writeOffset() + i * 2];
+            }
+            resampler.written(frames);
+            resampler.read(actual, done * 2, n);
+        }
+        assertArrayEquals(expected, actual);
+
+        assertThrows(IllegalArgumentException.class, () -> resampler.setWidth(3));
+    }
+
+    @Test
+    @DisplayName("music info")
+    void test17() throws Exception {
+        // SPC with a text ID666 tag, no emulator is needed
+        byte[] spc = new byte[0x100];
+        put(spc, 0, SpcEmu.MAGIC);
+        spc[0x23] = 26;
+        put(spc, 0x2e, "Title");
+        put(spc, 0x4e, "Game");
+        put(spc, 0xa9, "120");
+        put(spc, 0xac, "5000");
+        put(spc, 0xb1, "Author");
+        MusicInfo info = MusicInfo.read(spc);
+        assertEquals("Title", info.title());
+        assertEquals("Game", info.game());
+        assertEquals("Author", info.author());
+        assertEquals(125_000_000, info.duration());
+
+        // binary variant
+        Arrays.fill(spc, 0x9e, 0x100, (byte) 0);
+        spc[0xa9] = (byte) 200;
+        put(spc, 0xb0, "Binary");
+        info = MusicInfo.read(spc);
+        assertEquals("Binary", info.author());
+        assertEquals(200_000_000, info.duration());
+
+        // VGM with a GD3 tag at the end
+        ByteBuffer vgm = ByteBuffer.allocate(0x100).order(ByteOrder.LITTLE_ENDIAN);
+        vgm.put(VgmEmu.MAGIC.getBytes());
+        vgm.putInt(0x14, 0x40 - 0x14);
+        vgm.putInt(0x18, 44100 * 3);
+        vgm.putInt(0x20, 44100);
+        vgm.position(0x40);
+        vgm.put("Gd3 ".getBytes()).putInt(0x100).putInt(6 * 2 + 4 * 2);
+        vgm.put("Track".getBytes(StandardCharsets.UTF_16LE)).putShort((short) 0);
+        vgm.putShort((short) 0); // no japanese name
+        vgm.put("G".getBytes(StandardCharsets.UTF_16LE)).putShort((short) 0);
+        info = MusicInfo.read(vgm.array());
+        assertEquals("Track", info.title());
+        assertEquals("G", info.game());
+        assertNull(info.author());
+        assertEquals(3_000_000, info.duration());
+        assertEquals(1_000_000, info.loopDuration());
+        assertEquals(144000, info.frameLength(48000));
+
+        assertNull(MusicInfo.read(new byte[0x10]));
+    }
+
+    @Test
+    @DisplayName("catalog")
+    void test18() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        Files.copy(Path.of(vgm), dir.resolve("a.vgm"));
+        Files.writeString(dir.resolve("readme.txt"), "not music");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(dir.resolve("b.zip")))) {
+            zip.putNextEntry(new ZipEntry("b.vgz"));
+            GZIPOutputStream gz = new GZIPOutputStream(zip);
+            gz.write(data);
+            gz.finish();
+            zip.closeEntry();
+        }
+
+        Path index = dir.resolve("index.gmec");
+        try (CatalogIndexer indexer = new CatalogIndexer(2)) {
+            Catalog catalog = indexer.index(Catalog.load(index), List.of(dir));
+            assertEquals(4, catalog.size());
+            assertEquals(3, indexer.lastReadCount());
+            catalog.save(index);
+
+            Catalog.Entry a = Catalog.load(index).get(dir.resolve("a.vgm").toAbsolutePath().toString());
+            assertEquals("VGM", a.format());
+            assertEquals(MusicInfo.read(data), a.info());
+            assertArrayEquals(new long[] {a.info().duration()}, a.durations());
+            Catalog.Entry b = Catalog.load(index).get(dir.resolve("b.zip").toAbsolutePath() + "!/b.vgz");
+            assertEquals(a.info(), b.info());
+            assertFalse(Catalog.load(index).get(dir.resolve("readme.txt").toAbsolutePath().toString()).isMusic());
+
+            // nothing changed, nothing is read
+            catalog = indexer.index(Catalog.load(index), List.of(dir));
+            assertEquals(5, catalog.size()); // the index itself
+            assertEquals(1, indexer.lastReadCount());
+            catalog = indexer.index(catalog, List.of(dir));
+            assertEquals(0, indexer.lastReadCount());
+        }
+
+        // an older version is indexed again fully
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(index)))) {
+            out.writeInt(Catalog.magic);
+            out.writeShort(Catalog.version - 1);
+            out.writeInt(0);
+        }
+        assertEquals(0, Catalog.load(index).size());
+    }
+
+    @Test
+    @DisplayName("mapped file plays same as loaded one")
+    void test19() throws Exception {
+        MusicEmu loaded = load(data);
+        loaded.startTrack(0);
+        ShortBuffer expected = ShortBuffer.allocate(44100 * 2 * 10);
+        loaded.play(expected);
+
+        MusicEmu emu = new VgmEmu();
+        emu.setSampleRate(44100);
+        emu.loadFile(DataReader.map(Path.of(vgm)));
+        emu.startTrack(0);
+        ShortBuffer actual = ShortBuffer.allocate(expected.capacity());
+        emu.play(actual);
+        assertArrayEquals(expected.array(), actual.array());
+
+        // from the position
+        ByteBuffer bb = ByteBuffer.allocateDirect(data.length + 3);
+        bb.position(3);
+        bb.put(data).position(3);
+        emu.loadFile(bb);
+        emu.startTrack(0);
+        actual.clear();
+        emu.play(actual);
+        assertArrayEquals(expected.array(), actual.array());
+    }
+
+    @Test
+    @DisplayName("streamed VGM/VGZ plays same as loaded one")
+    void test20() throws Exception {
+        int count = 44100 * 2 * 12; // loops once
+        byte[] vgm = vgm(new Random(1));
+        assertTrue(vgm.length > 0x4000 * 2); // the stream window
+        MusicEmu loaded = load(vgm);
+        loaded.setEndlessLoopFlag(true);
+        byte[] expected = play(loaded, count);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(baos)) {
+            gz.write(vgm);
+        }
+        for (byte[] file : List.of(vgm, baos.toByteArray())) {
+            AtomicInteger opened = new AtomicInteger();
+            VgmEmu emu = new VgmEmu();
+            emu.setSampleRate(44100);
+            emu.setEndlessLoopFlag(true);
+            emu.loadFile(() -> {
+                opened.incrementAndGet();
+                return new ByteArrayInputStream(file);
+            });
+            assertArrayEquals(expected, play(emu, count));
+            assertEquals(2, opened.get()); // again for the loop
+
+            // the data block is read again for a state before the loop
+            emu.startTrack(0);
+            emu.play(new byte[44100 * 2 * 2], 44100 * 2);
+            ByteBuffer state = ByteBuffer.allocate(0x10000);
+            emu.saveState(state);
+            byte[] a = new byte[44100 * 2 * 2 * 6];
+            emu.play(a, a.length / 2);
+            emu.restoreState(state.flip());
+            byte[] b = new byte[a.length];
+            emu.play(b, b.length / 2);
+            assertArrayEquals(a, b);
+
+            // states are shared with the loaded file, both ways
+            loaded.restoreState(state.rewind());
+            byte[] c = new byte[a.length];
+            loaded.play(c, c.length / 2);
+            assertArrayEquals(a, c);
+            loaded.restoreState(state.rewind());
+            ByteBuffer state2 = ByteBuffer.allocate(0x10000);
+            loaded.saveState(state2);
+            emu.restoreState(state2.flip());
+            byte[] d = new byte[a.length];
+            emu.play(d, d.length / 2);
+            assertArrayEquals(a, d);
+        }
+    }
+
+    @Test
+    @DisplayName("precompiled VGM plays same as interpreted one")
+    void test21() throws Exception {
+        int count = 44100 * 2 * 12;
+        for (byte[] file : List.of(data, vgm(new Random(2)))) {
+            MusicEmu interpreted = load(file);
+            interpreted.setEndlessLoopFlag(true);
+            byte[] expected = play(interpreted, count);
+
+            VgmEmu emu = new VgmEmu();
+            emu.setPrecompiled(true);
+            emu.setSampleRate(44100);
+            emu.setEndlessLoopFlag(true);
+            emu.loadFile(file);
+            assertArrayEquals(expected, play(emu, count));
+
+            // states are exchangeable
+            interpreted.startTrack(0);
+            interpreted.play(new byte[44100 * 2 * 2], 44100 * 2);
+            ByteBuffer state = ByteBuffer.allocate(0x10000);
+            interpreted.saveState(state);
+            byte[] a = new byte[44100 * 2 * 2 * 3];
+            interpreted.play(a, a.length / 2);
+            emu.restoreState(state.flip());
+            byte[] b = new byte[a.length];
+            emu.play(b, b.length / 2);
+            assertArrayEquals(a, b);
+        }
+    }
+
+    /** cores other than vgm, which test.vgm covers */
+    static final List<String> cores = List.of(Fixtures.NSF, Fixtures.GBS, Fixtures.SPC);
+
+    static MusicEmu load(String fixture, int rate) {
+        byte[] file = Fixtures.create(fixture);
+        MusicEmu emu = MusicEmuFactory.of(file).create();
+        emu.setSampleRate(rate);
+        emu.loadFile(file);
+        return emu;
+    }
+
+    @Test
+    @DisplayName("restored state plays same as the original on nsf, gbs and spc")
+    void test22() throws Exception {
+        int count = 44100 * 2;
+        for (String core : cores) {
+            MusicEmu emu = load(core, 44100);
+            play(emu, count * 3 + 100);
+            ByteBuffer state = ByteBuffer.allocate(0x20000);
+            emu.saveState(state);
+            byte[] expected = new byte[count * 2];
+            emu.play(expected, count);
+
+            emu.play(new byte[count * 2], count);
+            emu.restoreState(state.flip());
+            assertFalse(state.hasRemaining(), core);
+            byte[] actual = new byte[count * 2];
+            emu.play(actual, count);
+            assertArrayEquals(expected, actual, core);
+        }
+    }
+
+    @Test
+    @DisplayName("saved state resumes on another instance on nsf, gbs and spc")
+    void test23() throws Exception {
+        int count = 44100 * 2;
+        for (String core : cores) {
+            MusicEmu emu1 = load(core, 44100);
+            play(emu1, count * 3 + 100);
+            emu1.setFade(5, 2);
+            ByteBuffer state = ByteBuffer.allocate(0x20000);
+            emu1.saveState(state);
+            byte[] expected = new byte[count * 2 * 3];
+            emu1.play(expected, count * 3);
+
+            MusicEmu emu2 = load(core, 44100);
+            emu2.restoreState(state.flip());
+            assertEquals(emu1.position() - count * 3, emu2.position(), core);
+            byte[] actual = new byte[count * 2 * 3];
+            emu2.play(actual, count * 3);
+            assertArrayEquals(expected, actual, core);
+            assertTrue(rms(actual) > 0, core);
+
+            MusicEmu emu3 = load(core, 22050);
+            assertThrows(IllegalArgumentException.class, () -> emu3.restoreState(state.rewind()), core);
+
+            // identified by the whole file
+            byte[] longer = Arrays.copyOf(Fixtures.create(core), Fixtures.create(core).length + 1);
+            MusicEmu emu4 = MusicEmuFactory.of(longer).create();
+            emu4.setSampleRate(44100);
+            emu4.loadFile(longer);
+            assertThrows(IllegalArgumentException.class, () -> emu4.restoreState(state.rewind()), core);
+
+            // same header and length, other data
+            byte[] other = Fixtures.create(core);
+            other[other.length - 1] ^= 1;
+            MusicEmu emu5 = MusicEmuFactory.of(other).create();
+            emu5.setSampleRate(44100);
+            emu5.loadFile(other);
+            assertThrows(IllegalArgumentException.class, () -> emu5.restoreState(state.rewind()), core);
+        }
+    }
+
+    @Test
+    @DisplayName("nsf and gbs loop is found by memory of the player")
+    void test24() throws Exception {
+        // play routines of the fixtures count a byte up, so memory repeats after 256 calls
+        int seconds = 256 / 60 + 1;
+        for (String core : List.of(Fixtures.NSF, Fixtures.GBS)) {
+            MusicEmu emu = load(core, 44100);
+            emu.setLoopDetection(true);
+            emu.startTrack(0);
+            emu.skip(44100 * 2 * (seconds - 2));
+            assertFalse(emu.trackLooped(), core);
+            assertTrue(emu.skip(44100 * 2 * 10) < 44100 * 2 * 10, core);
+            assertTrue(emu.trackLooped(), core);
+            assertTrue(emu.trackEnded(), core);
+
+            emu.setEndlessLoopFlag(true);
+            emu.startTrack(0);
+            assertFalse(emu.trackLooped(), core);
+            emu.skip(44100 * 2 * 10);
+            assertTrue(emu.trackLooped(), core);
+            assertFalse(emu.trackEnded(), core);
+
+            emu.setLoopDetection(false);
+            emu.setEndlessLoopFlag(false);
+            emu.startTrack(0);
+            emu.skip(44100 * 2 * 10);
+            assertFalse(emu.trackLooped(), core);
+        }
+    }
+
+    @Test
+    @DisplayName("spc is resampled to 44100 and 48000 Hz")
+    void test25() throws Exception {
+        int seconds = 3;
+        int crossings = crossings(play(load(Fixtures.SPC, 32000), 32000 * 2 * seconds));
+        for (int rate : new int[] {44100, 48000}) {
+            Renderer renderer = new Renderer(load(Fixtures.SPC, rate));
+            renderer.startTrack(0, seconds, 0);
+            ByteBuffer bb = ByteBuffer.allocate(rate * 2 * 2 * (seconds + 1));
+            assertEquals(rate * 2 * 2 * seconds, renderer.render(bb), "at " + rate);
+            assertTrue(renderer.isEnded());
+            byte[] pcm = Arrays.copyOf(bb.array(), bb.position());
+            assertTrue(rms(pcm) > 1000, "at " + rate);
+            // same pitch as the DSP output at 32000 Hz, within 5% as the voices are mixed
+            assertEquals(crossings, crossings(pcm), crossings / 20.0, "at " + rate);
+
+            MusicEmu emu = load(Fixtures.SPC, rate);
+            play(emu, rate * 2 + 101);
+            ByteBuffer state = ByteBuffer.allocate(0x20000);
+            emu.saveState(state);
+            byte[] expected = new byte[rate * 2 * 2];
+            emu.play(expected, rate * 2);
+            emu.restoreState(state.flip());
+            byte[] actual = new byte[rate * 2 * 2];
+            emu.play(actual, rate * 2);
+            assertArrayEquals(expected, actual, "at " + rate);
+        }
+    }
+
+    @Test
+    @DisplayName("samples packed into bytes are same as rendered into arrays")
+    void test26() throws Exception {
+        int count = 44100 * 2;
+        for (ByteOrder order : List.of(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+            MusicEmu emu = load(Fixtures.VGM_YM2612, 44100);
+            emu.startTrack(0);
+            short[] samples = new short[count];
+            emu.play(samples, 0, count);
+            assertTrue(rms(play(emu, count)) > 1000);
+            emu.startTrack(0);
+            byte[] bytes = new byte[3 + count * 2];
+            assertEquals(count, emu.play(bytes, 3, count, order));
+            short[] actual = new short[count];
+            ByteBuffer.wrap(bytes, 3, count * 2).slice().order(order).asShortBuffer().get(actual);
+            assertArrayEquals(samples, actual);
+
+            emu.startTrack(0);
+            float[] floats = new float[count];
+            emu.play(floats, 0, count);
+            emu.startTrack(0);
+            bytes = new byte[3 + count * 4];
+            assertEquals(count, emu.playFloat(bytes, 3, count, order));
+            float[] actualFloats = new float[count];
+            ByteBuffer.wrap(bytes, 3, count * 4).slice().order(order).asFloatBuffer().get(actualFloats);
+            assertArrayEquals(floats, actualFloats);
+        }
+    }
+
+    @Test
+    @DisplayName("catalog estimates lengths not in headers")
+    void test27() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        for (String core : cores) {
+            Files.write(dir.resolve("a." + core), Fixtures.create(core));
+        }
+        // 3 songs, total songs in the header
+        for (Map.Entry<String, Integer> e : Map.of(Fixtures.NSF, 0x06, Fixtures.GBS, 0x04).entrySet()) {
+            byte[] file = Fixtures.create(e.getKey());
+            file[e.getValue()] = 3;
+            Files.write(dir.resolve("b." + e.getKey()), file);
+        }
+        try (CatalogIndexer indexer = new CatalogIndexer(2)) {
+            indexer.setEstimateLimit(10);
+            Catalog catalog = indexer.index(new Catalog(), List.of(dir));
+            // play routines of the fixtures loop after 256 calls
+            for (String core : List.of(Fixtures.NSF, Fixtures.GBS)) {
+                Catalog.Entry a = catalog.get(dir.resolve("a." + core).toAbsolutePath().toString());
+                assertEquals(1, a.durations().length, core);
+                assertTrue(a.duration(0) > 4_000_000 && a.duration(0) < 5_000_000, core + ": " + a.duration(0));
+                assertEquals(-1, a.info().duration(), core); // not in the header
+                // each track
+                Catalog.Entry b = catalog.get(dir.resolve("b." + core).toAbsolutePath().toString());
+                assertEquals(3, b.durations().length, core);
+                for (int track = 0; track < 3; track++) {
+                    assertEquals(a.duration(0), b.duration(track), core + ": " + track);
+                }
+                assertEquals(-1, b.duration(3));
+            }
+            // neither loops nor goes silent
+            assertEquals(-1, catalog.get(dir.resolve("a.spc").toAbsolutePath().toString()).duration(0));
+
+            indexer.setEstimateLimit(0);
+            catalog = indexer.index(new Catalog(), List.of(dir));
+            assertEquals(-1, catalog.get(dir.resolve("a.nsf").toAbsolutePath().toString()).duration(0));
+        }
+    }
+
+    @Test
+    @DisplayName("tracks are 0 to trackCount() - 1")
+    void test28() throws Exception {
+        // total songs in the header
+        for (Map.Entry<String, Integer> e : Map.of(Fixtures.NSF, 0x06, Fixtures.GBS, 0x04).entrySet()) {
+            byte[] file = Fixtures.create(e.getKey());
+            file[e.getValue()] = 3;
+            MusicEmu emu = MusicEmuFactory.of(file).create();
+            emu.setSampleRate(44100);
+            emu.loadFile(file);
+            assertEquals(3, emu.trackCount(), e.getKey());
+            emu.startTrack(2);
+            assertEquals(2, emu.currentTrack(), e.getKey());
+            assertThrows(IllegalArgumentException.class, () -> emu.startTrack(3), e.getKey());
+        }
+
+        MusicEmu emu = load(data);
+        assertEquals(1, emu.trackCount());
+        emu.startTrack(0);
+        assertThrows(IllegalArgumentException.class, () -> emu.startTrack(1));
+        assertThrows(IllegalArgumentException.class, () -> emu.startTrack(-1));
+    }
+
+    @Test
+    @DisplayName("silence is detected while skipping as well as playing")
+    void test29() throws Exception {
+        byte[] silent = Fixtures.create(Fixtures.NSF);
+        silent[0x80 + 1] = 0; // no channels enabled in the init routine
+        for (boolean skipping : new boolean[] {false, true}) {
+            for (byte[] file : List.of(silent, Fixtures.create(Fixtures.NSF))) {
+                MusicEmu emu = MusicEmuFactory.of(file).create();
+                emu.setSampleRate(44100);
+                emu.loadFile(file);
+                emu.setSilenceDetection(3000, 8);
+                emu.startTrack(0);
+                if (skipping) {
+                    emu.skip(44100 * 2 * 10);
+                } else {
+                    byte[] buf = new byte[4096 * 2];
+                    while (!emu.trackEnded() && emu.position() < 44100 * 2 * 10) {
+                        emu.play(buf, 4096);
+                    }
+                }
+                if (file == silent) {
+                    assertTrue(emu.trackEnded(), "skipping: " + skipping);
+                    assertFalse(emu.trackLooped());
+                    assertTrue(emu.position() >= 44100 * 2 * 3 && emu.position() < 44100 * 2 * 4, "skipping: " + skipping + ", " + emu.position());
+                } else {
+                    assertFalse(emu.trackEnded(), "skipping: " + skipping);
+                }
+            }
+        }
+    }
+
+    /** sign changes of the left channel, with hysteresis against ringing */
+    static int crossings(byte[] pcm) {
+        ShortBuffer sb = ByteBuffer.wrap(pcm).asShortBuffer();
+        int n = 0;
+        boolean positive = false;
+        for (int i = 0; i < sb.limit(); i += 2) {
+            if (positive ? sb.get(i) < -1000 : sb.get(i) > 1000) {
+                positive = !positive;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** PSG and PCM commands after a data block larger than the stream window, looped after the block */
+    static byte[] vgm(Random random) {
+        int blockSize = 0x4000 * 3 / 2;
+        ByteBuffer bb = ByteBuffer.allocate(0x40 + 7 + blockSize + 40000).order(ByteOrder.LITTLE_ENDIAN);
+        bb.put(VgmEmu.MAGIC.getBytes());
+        bb.putInt(0x0c, 3579545);
+        bb.position(0x40);
+        bb.put((byte) 0x67).put((byte) 0x66).put((byte) 0).putInt(blockSize);
+        for (int i = 0; i < blockSize; i++) {
+            bb.put((byte) (0x80 + random.nextInt(64) - 32));
+        }
+        int loop = bb.position();
+        while (bb.remaining() > 6) {
+            int r = random.nextInt(100);
+            if (r < 40) {
+                bb.put((byte) 0x50).put((byte) random.nextInt(256));
+            } else if (r < 98) {
+                bb.put((byte) (0x80 + random.nextInt(16)));
+            } else if (r < 99) {
+                bb.put((byte) 0xe0).putInt(random.nextInt(blockSize));
+            } else {
+                bb.put((byte) 0x62);
+            }
+        }
+        bb.put((byte) 0x66);
+        bb.putInt(0x04, bb.position() - 4);
+        bb.putInt(0x1c, loop - 0x1c);
+        return Arrays.copyOf(bb.array(), bb.position());
+    }
+
+    static void put(byte[] b, int off, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, b, off, bytes.length);
+    }
+
+    /** 1 / 2 full scale sine of hz at 32000Hz, inverted in right */
+    static float[] resample(Resampler resampler, int hz, int frames) {
+        int n = resampler.required(frames);
+        float[] in = resampler.buffer(n);
+        for (int i = 0; i < n; i++) {
+            in[resampler.writeOffset() + i * 2] = (float) (0.5 * Math.sin(2 * Math.PI * hz * i / 32000));
+            in[resampler.writeOffset() + i * 2 + 1] = -in[resampler.writeOffset() + i * 2];
+        }
+        resampler.written(n);
+        float[] out = new float[frames * 2];
+        resampler.read(out, 0, frames);
+        return out;
+    }
+
+    /** muted skip leaves tiny rounding difference in the blip buffer integrator */
+    static void assertSimilar(byte[] expected, byte[] actual) {
+        ShortBuffer e = ByteBuffer.wrap(expected).asShortBuffer();
+        ShortBuffer a = ByteBuffer.wrap(actual).asShortBuffer();
+        for (int i = 0; i < e.limit(); i++) {
+            assertTrue(Math.abs(e.get(i) - a.get(i)) <= 1, "at " + i);
+        }
+    }
+}
@@ -9,12 +9,20 @@ package vavi.sound.sampled.emu;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -22,6 +30,7 @@ import javax.sound.sampled.DataLine;
 import javax.sound.sampled.SourceDataLine;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
+import libgme.MusicEmu;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -29,8 +38,10 @@ import vavi.util.Debug;
 import vavi.util.properties.annotation.Property;
 import vavi.util.properties.annotation.PropsEntity;
 
+import static javax.sound.sampled.AudioFormat.Encoding.PCM_FLOAT;
 import static javax.sound.sampled.AudioFormat.Encoding.PCM_SIGNED;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static vavi.sound.SoundUtil.volume;
@@ -183,6 +194,116 @@ Debug.println("OUT: " + outAudioFormat);
         assertEquals(VGM, ais.getFormat().getEncoding());
     }
 
+    @Test
+    @DisplayName("float output")
+    void test6() throws Exception {
+        AudioInputStream sourceAis = AudioSystem.getAudioInputStream(Paths.get(vgm).toFile());
+        AudioFormat inAudioFormat = sourceAis.getFormat();
+        AudioFormat outAudioFormat = new AudioFormat(
+                PCM_FLOAT,
+                inAudioFormat.getSampleRate(),
+                32,
+                inAudioFormat.getChannels(),
+                inAudioFormat.getChannels() * 4,
+                inAudioFormat.getSampleRate(),
+                true);
+        assertTrue(AudioSystem.isConversionSupported(outAudioFormat, inAudioFormat));
+
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, sourceAis);
+        assertEquals(PCM_FLOAT, pcmAis.getFormat().getEncoding());
+        byte[] buf = new byte[44100 * 8];
+        int n = pcmAis.readNBytes(buf, 0, buf.length);
+        assertEquals(buf.length, n);
+        FloatBuffer fb = ByteBuffer.wrap(buf).asFloatBuffer();
+        float peak = 0;
+        while (fb.hasRemaining()) {
+            peak = Math.max(peak, Math.abs(fb.get()));
+        }
+Debug.println("peak: " + peak);
+        assertTrue(peak > 0 && peak < 4);
+    }
+
+    @Test
+    @DisplayName("render at the requested rate and channels")
+    void test7() throws Exception {
+        AudioInputStream sourceAis = AudioSystem.getAudioInputStream(Paths.get(vgm).toFile());
+        AudioFormat inAudioFormat = sourceAis.getFormat();
+        AudioFormat outAudioFormat = new AudioFormat(48000, 16, 1, true, false);
+        assertTrue(AudioSystem.isConversionSupported(outAudioFormat, inAudioFormat));
+
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, sourceAis);
+        assertEquals(outAudioFormat.toString(), pcmAis.getFormat().toString());
+        MusicEmu emu = (MusicEmu) inAudioFormat.getProperty("emu");
+        assertEquals(48000, emu.sampleRate());
+        assertEquals(1, emu.channelCount());
+        byte[] buf = new byte[48000 * 2];
+        assertEquals(buf.length, pcmAis.readNBytes(buf, 0, buf.length));
+    }
+
+    @Test
+    @DisplayName("read any size")
+    void test8() throws Exception {
+        AudioInputStream sourceAis = AudioSystem.getAudioInputStream(Paths.get(vgm).toFile());
+        AudioFormat outAudioFormat = new AudioFormat(44100, 16, 2, true, true);
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, sourceAis);
+        assertTrue(pcmAis.available() > 0);
+
+        byte[] buf = new byte[44100 * 4];
+        int pos = 0;
+        for (int len = 1; pos < buf.length; len = len * 3 + 1) {
+            int n = pcmAis.read(buf, pos, Math.min(len, buf.length - pos));
+            assertEquals(0, n % 4); // whole frames
+            pos += n;
+        }
+        assertEquals(buf.length, pos);
+        assertEquals(44100, pcmAis.skip(44100));
+    }
+
+    @Test
+    @DisplayName("probe header only")
+    void test9() throws Exception {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(Paths.get(vgm)))) {
+            int available = is.available();
+            AudioFileFormat aff = new EmuAudioFileReader().getAudioFileFormat(is);
+            assertEquals(VGM, aff.getFormat().getEncoding());
+            assertNull(aff.getFormat().getProperty("emu")); // not created yet
+            assertEquals(available, is.available()); // not consumed
+
+            AudioInputStream ais = new EmuAudioFileReader().getAudioInputStream(is);
+            assertTrue(ais.getFormat().getProperty("emu") instanceof MusicEmu);
+        }
+    }
+
+    @Test
+    @DisplayName("probe seeks to VGM GD3 of a local file, VGZ is not inflated for it")
+    void test10() throws Exception {
+        int gd3 = 0x10000; // far after the probed bytes
+        ByteBuffer vgm = ByteBuffer.allocate(gd3 + 12 + 6 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        vgm.put("Vgm ".getBytes());
+        vgm.putInt(0x04, vgm.capacity() - 4);
+        vgm.putInt(0x14, gd3 - 0x14);
+        vgm.put(0x40, (byte) 0x66);
+        byte[] noise = new byte[gd3 - 0x41]; // not compressed into the probed bytes
+        new Random(1).nextBytes(noise);
+        vgm.position(0x41);
+        vgm.put(noise);
+        vgm.put("Gd3 ".getBytes()).putInt(0x100).putInt(6 * 2);
+        vgm.put("Track".getBytes(StandardCharsets.UTF_16LE)).putShort((short) 0);
+
+        Path dir = Files.createTempDirectory("probe");
+        Path file = Files.write(dir.resolve("a.vgm"), vgm.array());
+        AudioFileFormat aff = new EmuAudioFileReader().getAudioFileFormat(file.toFile());
+        assertEquals("Track", aff.getProperty("title"));
+
+        Path vgz = dir.resolve("a.vgz");
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(vgz))) {
+            os.write(vgm.array());
+        }
+        aff = new EmuAudioFileReader().getAudioFileFormat(vgz.toFile());
+        assertEquals(VGM, aff.getFormat().getEncoding());
+        assertNull(aff.getProperty("title"));
+    }
+
     @Test
     @DisplayName("when unsupported file coming")
     void test5() throws Exception {